@@ -0,0 +1,57 @@
+package com.anqit.util.lamqa.loadsim;
+
+import java.util.Random;
+
+/**
+ * The time a synthetic trial takes, drawn at random for each call
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+	/**
+	 * @param random
+	 * 		the source of randomness to use
+	 * @return
+	 * 		the next latency, in nanoseconds
+	 */
+	long nextNanos(Random random);
+	
+	/**
+	 * @return a distribution where trials take no time
+	 */
+	static LatencyDistribution none() {
+		return random -> 0;
+	}
+	
+	/**
+	 * @param nanos
+	 * 		the latency of every call
+	 * @return a distribution where every trial takes the same time
+	 */
+	static LatencyDistribution fixed(long nanos) {
+		return random -> nanos;
+	}
+	
+	/**
+	 * @param minNanos
+	 * 		the shortest latency
+	 * @param maxNanos
+	 * 		the longest latency
+	 * @return a distribution where latencies are spread evenly between two bounds
+	 */
+	static LatencyDistribution uniform(long minNanos, long maxNanos) {
+		if(maxNanos < minNanos) {
+			throw new IllegalArgumentException("the maximum latency is below the minimum: " + maxNanos + " < " + minNanos);
+		}
+		
+		return random -> minNanos + (long) (random.nextDouble() * (maxNanos - minNanos));
+	}
+	
+	/**
+	 * @param meanNanos
+	 * 		the mean latency
+	 * @return a distribution with a long tail, where most calls are fast and a few are much slower than the mean
+	 */
+	static LatencyDistribution exponential(long meanNanos) {
+		return random -> (long) (-Math.log(1 - random.nextDouble()) * meanNanos);
+	}
+}
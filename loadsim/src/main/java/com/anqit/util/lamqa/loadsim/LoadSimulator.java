@@ -0,0 +1,126 @@
+package com.anqit.util.lamqa.loadsim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.anqit.util.lamqa.concurrent.TaskExecutors;
+import com.anqit.util.lamqa.trials.TrialAndError.NoArgTrialAndError;
+
+/**
+ * Drives a chain of {@link SyntheticTrial}s from a number of threads at a target rate, and reports how it behaved.
+ * <p>
+ * Each thread calls the chain on a fixed schedule, and latency is measured from when a call was due rather than when
+ * it started, so calls delayed by a slow chain are counted as slow rather than silently skipped. Run it with
+ * {@code mvn exec:java -Dexec.args="--depth=3 --failure=0.2,0.05,0 --rate=5000"}; see
+ * {@link SimulationConfig#parse(String...)} for the options.
+ */
+public class LoadSimulator {
+	private final SimulationConfig config;
+	
+	/**
+	 * @param config the chain to simulate and the load to drive it with
+	 */
+	public LoadSimulator(SimulationConfig config) {
+		this.config = config;
+	}
+	
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
+		SimulationConfig config;
+		try {
+			config = SimulationConfig.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(SimulationConfig.USAGE);
+			System.exit(2);
+			return;
+		}
+		
+		System.out.println(config);
+		new LoadSimulator(config).run().print(System.out);
+	}
+	
+	/**
+	 * Run the simulation, blocking until it has finished
+	 * 
+	 * @return
+	 * 		the measurements taken after the warm-up
+	 */
+	public SimulationReport run() throws InterruptedException, ExecutionException {
+		NoArgTrialAndError<Integer> chain = config.buildChain();
+		int threads = config.getThreads();
+		long interval = config.getRate() > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * threads / config.getRate()) : 0;
+		
+		ExecutorService executor = newExecutor(threads);
+		try {
+			long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+			long measureFrom = start + config.getWarmupNanos();
+			long end = measureFrom + config.getDurationNanos();
+			
+			List<Future<SimulationReport>> workers = new ArrayList<>(threads);
+			for(int i = 0; i < threads; i++) {
+				// spread the threads' schedules out, so they do not all call at once
+				long firstCall = start + interval * i / threads;
+				workers.add(executor.submit(() -> drive(chain, firstCall, interval, measureFrom, end)));
+			}
+			
+			SimulationReport report = new SimulationReport(config.getDepth());
+			for(Future<SimulationReport> worker : workers) {
+				report.add(worker.get());
+			}
+			report.setElapsedNanos(end - measureFrom);
+			
+			return report;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private SimulationReport drive(NoArgTrialAndError<Integer> chain, long firstCall, long interval, long measureFrom, long end) {
+		SimulationReport report = new SimulationReport(config.getDepth());
+		
+		long due = firstCall;
+		while(true) {
+			long callStart;
+			if(interval > 0) {
+				waitUntil(due);
+				callStart = due;
+				due += interval;
+			} else {
+				callStart = System.nanoTime();
+			}
+			
+			if(callStart - end >= 0 || Thread.currentThread().isInterrupted()) {
+				return report;
+			}
+			
+			int trial = chain.run();
+			long latency = System.nanoTime() - callStart;
+			if(callStart - measureFrom >= 0) {
+				report.record(trial, latency);
+			}
+		}
+	}
+	
+	private ExecutorService newExecutor(int threads) {
+		if(!config.isVirtual()) {
+			return Executors.newFixedThreadPool(threads);
+		}
+		
+		if(!TaskExecutors.usesVirtualThreads()) {
+			System.err.println("virtual threads are not available on this runtime, so platform threads are used");
+		}
+		return TaskExecutors.newTaskExecutor();
+	}
+	
+	private static void waitUntil(long due) {
+		for(long remaining = due - System.nanoTime(); remaining > 0; remaining = due - System.nanoTime()) {
+			LockSupport.parkNanos(remaining);
+		}
+	}
+}
@@ -0,0 +1,306 @@
+package com.anqit.util.lamqa.loadsim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.anqit.util.lamqa.trials.TrialAndError;
+import com.anqit.util.lamqa.trials.TrialAndError.NoArgTrialAndError;
+
+/**
+ * The shape of a simulated chain and of the load to drive it with. Settings that apply to each trial in the chain take
+ * one value per trial; if fewer are given than the chain is deep, the last one is used for the remaining trials.
+ */
+public class SimulationConfig {
+	static final String USAGE = String.join(System.lineSeparator(),
+			"Options, as --name=value:",
+			"  depth       the number of trials in the chain (default 3)",
+			"  failure     comma-separated failure probabilities per trial, 0 to 1 (default 0.1)",
+			"  latency     comma-separated latency distributions per trial: none, fixed:2ms, uniform:1ms-5ms or exp:2ms",
+			"              (default exp:1ms)",
+			"  exception   comma-separated exception class names per trial (default java.io.IOException)",
+			"  threads     the number of threads driving the chain (default 8)",
+			"  virtual     true to drive the chain from virtual threads, where the runtime has them (default false)",
+			"  rate        the target number of calls per second across all threads, or 0 for as many as possible",
+			"              (default 1000)",
+			"  warmup      how long to run before measuring, e.g. 5s (default 5s)",
+			"  duration    how long to measure for, e.g. 30s (default 30s)");
+	
+	private int depth = 3;
+	private double[] failureRates = { 0.1 };
+	private LatencyDistribution[] latencies = { LatencyDistribution.exponential(TimeUnit.MILLISECONDS.toNanos(1)) };
+	private List<Class<? extends Exception>> exceptionTypes = new ArrayList<>(Arrays.asList(java.io.IOException.class));
+	private int threads = 8;
+	private boolean virtual = false;
+	private double rate = 1000;
+	private long warmupNanos = TimeUnit.SECONDS.toNanos(5);
+	private long durationNanos = TimeUnit.SECONDS.toNanos(30);
+	
+	/**
+	 * Parse a configuration from command line arguments of the form {@code --name=value}. See {@link #USAGE}.
+	 * 
+	 * @param args
+	 * 		the arguments to parse
+	 * @return
+	 * 		the parsed configuration
+	 * @throws IllegalArgumentException if an argument cannot be parsed
+	 */
+	public static SimulationConfig parse(String... args) {
+		SimulationConfig config = new SimulationConfig();
+		for(String arg : args) {
+			String[] option = arg.startsWith("--") ? arg.substring(2).split("=", 2) : new String[0];
+			if(option.length != 2) {
+				throw new IllegalArgumentException("expected --name=value, but got " + arg);
+			}
+			
+			String value = option[1];
+			switch(option[0]) {
+			case "depth":
+				config.depth(Integer.parseInt(value));
+				break;
+			case "failure":
+				config.failureRates(Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).toArray());
+				break;
+			case "latency":
+				config.latencies(parseEach(value, SimulationConfig::parseLatency).toArray(new LatencyDistribution[0]));
+				break;
+			case "exception":
+				config.exceptionTypes(parseEach(value, SimulationConfig::parseExceptionType));
+				break;
+			case "threads":
+				config.threads(Integer.parseInt(value));
+				break;
+			case "virtual":
+				config.virtual(Boolean.parseBoolean(value));
+				break;
+			case "rate":
+				config.rate(Double.parseDouble(value));
+				break;
+			case "warmup":
+				config.warmup(parseNanos(value), TimeUnit.NANOSECONDS);
+				break;
+			case "duration":
+				config.duration(parseNanos(value), TimeUnit.NANOSECONDS);
+				break;
+			default:
+				throw new IllegalArgumentException("unknown option: " + option[0]);
+			}
+		}
+		
+		return config;
+	}
+	
+	/**
+	 * @param depth the number of trials in the chain
+	 * @return this {@link SimulationConfig} instance
+	 */
+	public SimulationConfig depth(int depth) {
+		if(depth < 1) {
+			throw new IllegalArgumentException("the chain needs at least one trial: " + depth);
+		}
+		this.depth = depth;
+		
+		return this;
+	}
+	
+	/**
+	 * @param failureRates the probability, from 0 to 1, that each trial throws
+	 * @return this {@link SimulationConfig} instance
+	 */
+	public SimulationConfig failureRates(double... failureRates) {
+		this.failureRates = nonEmpty(failureRates.clone(), failureRates.length);
+		
+		return this;
+	}
+	
+	/**
+	 * @param latencies how long each trial takes
+	 * @return this {@link SimulationConfig} instance
+	 */
+	public SimulationConfig latencies(LatencyDistribution... latencies) {
+		this.latencies = nonEmpty(latencies.clone(), latencies.length);
+		
+		return this;
+	}
+	
+	/**
+	 * @param exceptionTypes the type of exception each trial throws
+	 * @return this {@link SimulationConfig} instance
+	 */
+	public SimulationConfig exceptionTypes(List<Class<? extends Exception>> exceptionTypes) {
+		this.exceptionTypes = nonEmpty(new ArrayList<>(exceptionTypes), exceptionTypes.size());
+		
+		return this;
+	}
+	
+	/**
+	 * @param threads the number of threads driving the chain
+	 * @return this {@link SimulationConfig} instance
+	 */
+	public SimulationConfig threads(int threads) {
+		if(threads < 1) {
+			throw new IllegalArgumentException("at least one thread is needed: " + threads);
+		}
+		this.threads = threads;
+		
+		return this;
+	}
+	
+	/**
+	 * @param virtual whether to drive the chain from virtual threads, where the runtime has them
+	 * @return this {@link SimulationConfig} instance
+	 */
+	public SimulationConfig virtual(boolean virtual) {
+		this.virtual = virtual;
+		
+		return this;
+	}
+	
+	/**
+	 * @param rate the target number of calls per second across all threads, or 0 for as many as possible
+	 * @return this {@link SimulationConfig} instance
+	 */
+	public SimulationConfig rate(double rate) {
+		if(rate < 0) {
+			throw new IllegalArgumentException("the rate cannot be negative: " + rate);
+		}
+		this.rate = rate;
+		
+		return this;
+	}
+	
+	/**
+	 * @param warmup how long to run before measuring
+	 * @param unit the unit of {@code warmup}
+	 * @return this {@link SimulationConfig} instance
+	 */
+	public SimulationConfig warmup(long warmup, TimeUnit unit) {
+		this.warmupNanos = unit.toNanos(warmup);
+		
+		return this;
+	}
+	
+	/**
+	 * @param duration how long to measure for
+	 * @param unit the unit of {@code duration}
+	 * @return this {@link SimulationConfig} instance
+	 */
+	public SimulationConfig duration(long duration, TimeUnit unit) {
+		this.durationNanos = unit.toNanos(duration);
+		
+		return this;
+	}
+	
+	/**
+	 * @return a new chain of {@link SyntheticTrial}s, which returns the index of the trial that succeeded, or
+	 * 		{@code -1} if they all failed
+	 */
+	public NoArgTrialAndError<Integer> buildChain() {
+		NoArgTrialAndError<Integer> chain = TrialAndError.firstTry(trial(0));
+		for(int i = 1; i < depth; i++) {
+			chain.orElseTry(trial(i));
+		}
+		
+		return chain.ifAllElseFails(-1).named("simulated");
+	}
+	
+	public int getDepth() { return depth; }
+	public int getThreads() { return threads; }
+	public boolean isVirtual() { return virtual; }
+	public double getRate() { return rate; }
+	public long getWarmupNanos() { return warmupNanos; }
+	public long getDurationNanos() { return durationNanos; }
+	
+	@Override
+	public String toString() {
+		return String.format("depth=%d failure=%s threads=%d%s rate=%s warmup=%dms duration=%dms", depth,
+				Arrays.toString(failureRates), threads, virtual ? " (virtual)" : "", rate > 0 ? rate + "/s" : "unbounded",
+				TimeUnit.NANOSECONDS.toMillis(warmupNanos), TimeUnit.NANOSECONDS.toMillis(durationNanos));
+	}
+	
+	private SyntheticTrial trial(int index) {
+		return new SyntheticTrial(index, failureRates[Math.min(index, failureRates.length - 1)],
+				latencies[Math.min(index, latencies.length - 1)],
+				exceptionTypes.get(Math.min(index, exceptionTypes.size() - 1)));
+	}
+	
+	private static <T> T nonEmpty(T values, int length) {
+		if(length == 0) {
+			throw new IllegalArgumentException("at least one value is needed");
+		}
+		
+		return values;
+	}
+	
+	private static <T> List<T> parseEach(String values, Function<String, T> parser) {
+		List<T> parsed = new ArrayList<>();
+		for(String value : values.split(",")) {
+			parsed.add(parser.apply(value.trim()));
+		}
+		
+		return parsed;
+	}
+	
+	/**
+	 * Parse a distribution from one of the forms {@code none}, {@code fixed:2ms}, {@code uniform:1ms-5ms} or
+	 * {@code exp:2ms}
+	 */
+	static LatencyDistribution parseLatency(String spec) {
+		String[] parts = spec.split(":", 2);
+		if(parts[0].equals("none")) {
+			return LatencyDistribution.none();
+		} else if(parts.length < 2) {
+			throw new IllegalArgumentException("missing a duration in " + spec);
+		}
+		
+		switch(parts[0]) {
+		case "fixed":
+			return LatencyDistribution.fixed(parseNanos(parts[1]));
+		case "uniform":
+			String[] bounds = parts[1].split("-", 2);
+			if(bounds.length != 2) {
+				throw new IllegalArgumentException("expected uniform:<min>-<max>, but got " + spec);
+			}
+			return LatencyDistribution.uniform(parseNanos(bounds[0]), parseNanos(bounds[1]));
+		case "exp":
+			return LatencyDistribution.exponential(parseNanos(parts[1]));
+		default:
+			throw new IllegalArgumentException("unknown latency distribution: " + spec);
+		}
+	}
+	
+	/**
+	 * Parse a duration such as {@code 250us}, {@code 2ms}, {@code 30s} or {@code 1m}
+	 */
+	static long parseNanos(String duration) {
+		String[] suffixes = { "ns", "us", "ms", "s", "m" };
+		TimeUnit[] units = { TimeUnit.NANOSECONDS, TimeUnit.MICROSECONDS, TimeUnit.MILLISECONDS, TimeUnit.SECONDS, TimeUnit.MINUTES };
+		for(int i = 0; i < suffixes.length; i++) {
+			if(duration.endsWith(suffixes[i])) {
+				try {
+					return units[i].toNanos(Long.parseLong(duration.substring(0, duration.length() - suffixes[i].length())));
+				} catch (NumberFormatException e) {
+					break;
+				}
+			}
+		}
+		
+		throw new IllegalArgumentException("expected a duration such as 250us, 2ms or 30s, but got " + duration);
+	}
+	
+	@SuppressWarnings("unchecked")
+	static Class<? extends Exception> parseExceptionType(String className) {
+		try {
+			Class<?> type = Class.forName(className);
+			if(!Exception.class.isAssignableFrom(type)) {
+				throw new IllegalArgumentException(className + " is not an Exception");
+			}
+			
+			return (Class<? extends Exception>) type;
+		} catch (ClassNotFoundException e) {
+			throw new IllegalArgumentException("unknown exception class: " + className, e);
+		}
+	}
+}
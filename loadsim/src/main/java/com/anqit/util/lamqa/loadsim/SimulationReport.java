@@ -0,0 +1,116 @@
+package com.anqit.util.lamqa.loadsim;
+
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * The results of a simulation: how many calls were made, how long they took, measured from when each call was due to
+ * start so that a stalled chain cannot hide its own latency, and which trial in the chain produced each result.
+ */
+public class SimulationReport {
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 99.99 };
+	private static final DecimalFormat PERCENTILE_FORMAT = new DecimalFormat("0.##");
+	private static final int BAR_WIDTH = 40;
+	
+	private final Histogram latencies = new Histogram(3);
+	// index 0 counts calls answered by the default, index i + 1 calls answered by trial i
+	private final long[] answeredBy;
+	private long elapsedNanos;
+	
+	SimulationReport(int depth) {
+		this.answeredBy = new long[depth + 1];
+	}
+	
+	void record(int trial, long latencyNanos) {
+		latencies.recordValue(latencyNanos);
+		answeredBy[trial + 1]++;
+	}
+	
+	void add(SimulationReport other) {
+		latencies.add(other.latencies);
+		for(int i = 0; i < answeredBy.length; i++) {
+			answeredBy[i] += other.answeredBy[i];
+		}
+	}
+	
+	void setElapsedNanos(long elapsedNanos) {
+		this.elapsedNanos = elapsedNanos;
+	}
+	
+	/**
+	 * @return the number of calls measured
+	 */
+	public long getCalls() {
+		return latencies.getTotalCount();
+	}
+	
+	/**
+	 * @return the number of calls measured per second
+	 */
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0 : getCalls() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+	}
+	
+	/**
+	 * @param percentile
+	 * 		the percentile, from 0 to 100
+	 * @return the latency below which the given percentage of calls completed, in nanoseconds
+	 */
+	public long getLatencyNanos(double percentile) {
+		return latencies.getValueAtPercentile(percentile);
+	}
+	
+	/**
+	 * @param trial
+	 * 		the index of a trial in the chain
+	 * @return the number of calls that trial answered, after all of the trials before it failed
+	 */
+	public long getAnsweredBy(int trial) {
+		return answeredBy[trial + 1];
+	}
+	
+	/**
+	 * @return the number of calls where every trial failed and the default was returned
+	 */
+	public long getDefaulted() {
+		return answeredBy[0];
+	}
+	
+	/**
+	 * Print the report in a human-readable form
+	 * 
+	 * @param out
+	 * 		the stream to print to
+	 */
+	public void print(PrintStream out) {
+		out.printf("calls       %d in %.1fs (%.1f/s)%n", getCalls(), elapsedNanos / 1e9, getThroughput());
+		
+		out.println("latency (us, from the intended start of each call)");
+		for(double percentile : PERCENTILES) {
+			out.printf("  p%-8s %12.1f%n", PERCENTILE_FORMAT.format(percentile), getLatencyNanos(percentile) / 1e3);
+		}
+		out.printf("  %-9s %12.1f%n", "max", latencies.getMaxValue() / 1e3);
+		
+		out.println("fallback depth (the trial that produced the result)");
+		long calls = Math.max(1, getCalls());
+		for(int i = 1; i <= answeredBy.length; i++) {
+			// the default is printed last, after the deepest trial
+			int slot = i % answeredBy.length;
+			String label = slot == 0 ? "default" : "trial " + (slot - 1);
+			double share = answeredBy[slot] / (double) calls;
+			out.printf("  %-9s %12d %6.2f%% %s%n", label, answeredBy[slot], share * 100, bar(share));
+		}
+	}
+	
+	private static String bar(double share) {
+		StringBuilder bar = new StringBuilder();
+		for(int i = 0; i < Math.round(share * BAR_WIDTH); i++) {
+			bar.append('#');
+		}
+		
+		return bar.toString();
+	}
+}
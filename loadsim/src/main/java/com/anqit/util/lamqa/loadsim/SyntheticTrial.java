@@ -0,0 +1,60 @@
+package com.anqit.util.lamqa.loadsim;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+import com.anqit.util.lamqa.function.ThrowingSupplier;
+
+/**
+ * One function of a simulated chain. Each call waits for a latency drawn from a {@link LatencyDistribution}, then
+ * either throws a new exception of the configured type, with the configured probability, or returns its position in
+ * the chain.
+ */
+public class SyntheticTrial implements ThrowingSupplier<Integer> {
+	private final int index;
+	private final double failureRate;
+	private final LatencyDistribution latency;
+	private final Constructor<? extends Exception> exception;
+	
+	/**
+	 * @param index
+	 * 		the position of this trial in its chain, which it returns when it succeeds
+	 * @param failureRate
+	 * 		the probability, from 0 to 1, that a call throws
+	 * @param latency
+	 * 		how long each call takes
+	 * @param exceptionType
+	 * 		the type of exception to throw, which must have a public constructor that takes a message
+	 */
+	public SyntheticTrial(int index, double failureRate, LatencyDistribution latency, Class<? extends Exception> exceptionType) {
+		if(failureRate < 0 || failureRate > 1) {
+			throw new IllegalArgumentException("the failure rate must be between 0 and 1: " + failureRate);
+		}
+		
+		this.index = index;
+		this.failureRate = failureRate;
+		this.latency = latency;
+		try {
+			this.exception = exceptionType.getConstructor(String.class);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException(exceptionType.getName() + " has no public constructor that takes a message", e);
+		}
+	}
+	
+	@Override
+	public Integer getThrows() throws Exception {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		
+		long until = System.nanoTime() + latency.nextNanos(random);
+		for(long remaining = until - System.nanoTime(); remaining > 0; remaining = until - System.nanoTime()) {
+			LockSupport.parkNanos(remaining);
+		}
+		
+		if(random.nextDouble() < failureRate) {
+			throw exception.newInstance("synthetic failure of trial " + index);
+		}
+		
+		return index;
+	}
+}
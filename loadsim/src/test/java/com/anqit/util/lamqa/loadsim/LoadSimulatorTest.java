@@ -0,0 +1,59 @@
+package com.anqit.util.lamqa.loadsim;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class LoadSimulatorTest {
+	@Test
+	public void testFallbackDepths() throws Exception {
+		SimulationConfig config = SimulationConfig.parse("--depth=3", "--failure=1,0.5,0", "--latency=none",
+				"--exception=java.lang.IllegalStateException", "--threads=2", "--rate=0", "--warmup=10ms", "--duration=200ms");
+		
+		SimulationReport report = new LoadSimulator(config).run();
+		
+		assertTrue(report.getCalls() > 100);
+		assertThat(report.getAnsweredBy(0), is(0L));
+		assertThat(report.getDefaulted(), is(0L));
+		assertThat(report.getAnsweredBy(1) + report.getAnsweredBy(2), is(report.getCalls()));
+		assertTrue(report.getAnsweredBy(1) > 0 && report.getAnsweredBy(2) > 0);
+	}
+	
+	@Test
+	public void testTargetRateAndLatency() throws Exception {
+		SimulationConfig config = new SimulationConfig()
+				.depth(1)
+				.failureRates(0)
+				.latencies(LatencyDistribution.fixed(TimeUnit.MILLISECONDS.toNanos(2)))
+				.threads(4)
+				.rate(400)
+				.warmup(50, TimeUnit.MILLISECONDS)
+				.duration(500, TimeUnit.MILLISECONDS);
+		
+		SimulationReport report = new LoadSimulator(config).run();
+		
+		assertTrue("throughput " + report.getThroughput(), report.getThroughput() > 300 && report.getThroughput() < 500);
+		assertTrue(report.getLatencyNanos(50) >= TimeUnit.MILLISECONDS.toNanos(2));
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		report.print(new PrintStream(out));
+		assertTrue(out.toString().contains("trial 0"));
+	}
+	
+	@Test
+	public void testParseErrors() {
+		for(String arg : new String[] { "depth=3", "--latency=fast", "--duration=3 weeks", "--exception=java.lang.String" }) {
+			try {
+				SimulationConfig.parse(arg);
+				throw new AssertionError("expected " + arg + " to be rejected");
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package com.anqit.util.lamqa.concurrent;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link Executor}s used to run work asynchronously when a caller does not provide one.
+ * <p>
+ * On Java 8 these are cached pools of daemon threads, so tasks that block never wait on each other. On runtimes
+ * with virtual threads, virtual-thread-per-task executors are used instead.
+ */
+public final class TaskExecutors {
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+	private static final Executor DEFAULT = newTaskExecutor();
+	
+	private TaskExecutors() { }
+	
+	/**
+	 * @return the shared {@link Executor} for tasks that may block
+	 */
+	public static Executor defaultExecutor() {
+		return DEFAULT;
+	}
+	
+	/**
+	 * Create a new {@link ExecutorService} that runs each task as soon as it is submitted, rather than queuing it
+	 * 
+	 * @return a new {@link ExecutorService}, which the caller is responsible for shutting down
+	 */
+	public static ExecutorService newTaskExecutor() {
+		return Executors.newCachedThreadPool(task -> {
+			Thread thread = new Thread(task, "lamqa-task-" + THREAD_COUNT.incrementAndGet());
+			thread.setDaemon(true);
+			
+			return thread;
+		});
+	}
+	
+	/**
+	 * @return {@code true} if the executors run tasks on virtual threads
+	 */
+	public static boolean usesVirtualThreads() {
+		return false;
+	}
+}
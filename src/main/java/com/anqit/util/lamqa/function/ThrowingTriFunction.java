@@ -0,0 +1,50 @@
+package com.anqit.util.lamqa.function;
+
+/**
+ * A three-arg function that can throw a checked {@link Exception}
+ *
+ * @param <T>
+ * 		the type of the first argument to the function
+ * @param <U>
+ * 		the type of the second argument to the function
+ * @param <V>
+ * 		the type of the third argument to the function
+ * @param <R>
+ * 		the type of the result of the function
+ */
+@FunctionalInterface
+public interface ThrowingTriFunction<T, U, V, R> extends Returns<R> {
+	/**
+	 * Applies this function to the given arguments, wrapping any {@link Exception} in a {@link RuntimeException}
+	 * 
+	 * @param t
+	 * 		the first function argument
+	 * @param u
+	 * 		the second function argument
+	 * @param v
+	 * 		the third function argument
+	 * @return
+	 * 		the function result
+	 */
+	default R apply(T t, U u, V v) {
+		try {
+			return applyThrows(t, u, v);
+		} catch(Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Applies this function to the given arguments, possibly throwing an {@link Exception}
+	 * @param t
+	 * 		the first function argument
+	 * @param u
+	 * 		the second function argument
+	 * @param v
+	 * 		the third function argument
+	 * @return
+	 * 		the function result
+	 * @throws Exception
+	 */
+	R applyThrows(T t, U u, V v) throws Exception;
+}
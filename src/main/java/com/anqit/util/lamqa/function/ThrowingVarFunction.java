@@ -6,7 +6,7 @@ package com.anqit.util.lamqa.function;
  * @param <R>
  * 		the return type of the function
  */
-public interface ThrowingVarFunction<R> {
+public interface ThrowingVarFunction<R> extends Returns<R> {
 	/**
 	 * Applies this function to the given aruments
 	 * 
@@ -0,0 +1,19 @@
+package com.anqit.util.lamqa.jfr;
+
+/**
+ * Tracks whether a JDK Flight Recorder recording is running, so that lamqa's event classes can skip creating events
+ * otherwise. For use by lamqa itself, not part of its API.
+ * <p>
+ * Flight Recorder events need Java 11, so this implementation always reports that nothing is being recorded; on
+ * Java 11+ a version that listens to the Flight Recorder is used instead.
+ */
+public final class Recordings {
+	private Recordings() { }
+	
+	/**
+	 * @return {@code true} if a recording is running
+	 */
+	public static boolean isActive() {
+		return false;
+	}
+}
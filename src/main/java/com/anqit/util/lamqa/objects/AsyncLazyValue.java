@@ -0,0 +1,152 @@
+package com.anqit.util.lamqa.objects;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.anqit.util.lamqa.concurrent.TaskExecutors;
+
+/**
+ * A {@link LazyValue} counterpart for callers that must not block: {@link #get()} returns a
+ * {@link CompletableFuture} of the value rather than the value itself.
+ * <p>
+ * The first call to {@link #get()} starts the {@link Supplier} on an {@link Executor}; it and every later call share
+ * the same evaluation. Each call returns its own dependent future of it, so a caller that completes or cancels its
+ * future does not affect the others. If the evaluation fails, it is not cached: the next call to {@link #get()} starts
+ * the {@link Supplier} again.
+ *
+ * @param <T> the type of the value
+ */
+public class AsyncLazyValue<T> {
+	private final Supplier<? extends CompletionStage<T>> valueSupplier;
+	private final Executor executor;
+	private final AtomicReference<CompletableFuture<T>> current = new AtomicReference<>();
+	
+	private AsyncLazyValue(Supplier<? extends CompletionStage<T>> valueSupplier, Executor executor) {
+		this.valueSupplier = Objects.requireNonNull(valueSupplier);
+		this.executor = Objects.requireNonNull(executor);
+	}
+	
+	/**
+	 * Create an {@link AsyncLazyValue} instance of the given {@link Supplier}, which is run on
+	 * {@link TaskExecutors#defaultExecutor()}
+	 * 
+	 * @param valueSupplier the {@link Supplier} function to call to obtain the value
+	 * 
+	 * @return a new {@link AsyncLazyValue} instance
+	 */
+	public static <T> AsyncLazyValue<T> of(Supplier<T> valueSupplier) {
+		return of(valueSupplier, TaskExecutors.defaultExecutor());
+	}
+	
+	/**
+	 * Create an {@link AsyncLazyValue} instance of the given {@link Supplier}
+	 * 
+	 * @param valueSupplier the {@link Supplier} function to call to obtain the value
+	 * @param executor the {@link Executor} to run the {@link Supplier} on
+	 * 
+	 * @return a new {@link AsyncLazyValue} instance
+	 */
+	public static <T> AsyncLazyValue<T> of(Supplier<T> valueSupplier, Executor executor) {
+		Objects.requireNonNull(valueSupplier);
+		
+		return new AsyncLazyValue<>(() -> CompletableFuture.completedFuture(valueSupplier.get()), executor);
+	}
+	
+	/**
+	 * Create an {@link AsyncLazyValue} instance of a {@link Supplier} that itself starts an asynchronous evaluation,
+	 * such as a non-blocking client call
+	 * 
+	 * @param valueSupplier the {@link Supplier} function to call to start obtaining the value
+	 * @param executor the {@link Executor} to call the {@link Supplier} on
+	 * 
+	 * @return a new {@link AsyncLazyValue} instance
+	 */
+	public static <T> AsyncLazyValue<T> ofAsync(Supplier<? extends CompletionStage<T>> valueSupplier, Executor executor) {
+		return new AsyncLazyValue<>(valueSupplier, executor);
+	}
+	
+	/**
+	 * Start evaluating the value if it has not been started yet, or if the last evaluation failed. Never blocks.
+	 * 
+	 * @return a future of the value, completed by the evaluation shared by all callers until the value is
+	 * 		{@link #refresh() refreshed}
+	 */
+	public CompletableFuture<T> get() {
+		CompletableFuture<T> future = current.get();
+		while(future == null || future.isCompletedExceptionally()) {
+			CompletableFuture<T> started = new CompletableFuture<>();
+			if(current.compareAndSet(future, started)) {
+				return copy(start(started));
+			}
+			
+			future = current.get();
+		}
+		
+		return copy(future);
+	}
+	
+	/**
+	 * Start evaluating the value again. Later calls to {@link #get()} return the new future; callers already holding
+	 * the previous one still receive its value.
+	 * 
+	 * @return the new future of the value
+	 */
+	public CompletableFuture<T> refresh() {
+		CompletableFuture<T> started = new CompletableFuture<>();
+		current.set(started);
+		
+		return copy(start(started));
+	}
+	
+	/**
+	 * @return if the value has been obtained successfully, so {@link #get()} returns a completed future
+	 */
+	public boolean isEvaluated() {
+		CompletableFuture<T> future = current.get();
+		
+		return future != null && future.isDone() && !future.isCompletedExceptionally();
+	}
+	
+	/**
+	 * @return if the value is not available yet, because it has not been requested, is still being evaluated, or
+	 * 		the last evaluation failed
+	 */
+	public boolean isNotEvaluated() {
+		return !isEvaluated();
+	}
+	
+	/**
+	 * @return a future completed with the shared future's outcome, which callers cannot use to complete the shared one
+	 */
+	private static <T> CompletableFuture<T> copy(CompletableFuture<T> shared) {
+		return shared.thenApply(Function.identity());
+	}
+	
+	private CompletableFuture<T> start(CompletableFuture<T> future) {
+		try {
+			executor.execute(() -> {
+				try {
+					valueSupplier.get().whenComplete((value, failure) -> {
+						if(failure == null) {
+							future.complete(value);
+						} else {
+							future.completeExceptionally(failure);
+						}
+					});
+				} catch (Throwable t) {
+					future.completeExceptionally(t);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		
+		return future;
+	}
+}
@@ -0,0 +1,39 @@
+package com.anqit.util.lamqa.objects;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link InputStream} over the remaining bytes of a {@link ByteBuffer}
+ */
+class ByteBufferInputStream extends InputStream {
+	private final ByteBuffer buffer;
+	
+	ByteBufferInputStream(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	@Override
+	public int read() {
+		return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if(len == 0) {
+			return 0;
+		} else if(!buffer.hasRemaining()) {
+			return -1;
+		}
+		
+		int count = Math.min(len, buffer.remaining());
+		buffer.get(b, off, count);
+		
+		return count;
+	}
+	
+	@Override
+	public int available() {
+		return buffer.remaining();
+	}
+}
@@ -0,0 +1,46 @@
+package com.anqit.util.lamqa.objects;
+
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+/**
+ * Estimates of the shallow size of objects on the running JVM, for reporting the memory used by containers
+ */
+final class Footprint {
+	static final int REFERENCE_BYTES;
+	static final int HEADER_BYTES;
+	
+	static {
+		boolean compressed;
+		try {
+			HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+			compressed = Boolean.parseBoolean(hotSpot.getVMOption("UseCompressedOops").getValue());
+		} catch(RuntimeException | LinkageError e) {
+			// not a HotSpot JVM; assume the common default for heaps under 32 GB
+			compressed = true;
+		}
+		REFERENCE_BYTES = compressed ? 4 : 8;
+		HEADER_BYTES = compressed ? 12 : 16;
+	}
+	
+	private Footprint() { }
+	
+	/**
+	 * @return the size of an object with the given number of reference and {@code int} fields
+	 */
+	static long object(int references, int ints) {
+		return align(HEADER_BYTES + (long) references * REFERENCE_BYTES + ints * 4L);
+	}
+	
+	/**
+	 * @return the size of an array of references with the given length
+	 */
+	static long referenceArray(int length) {
+		return align(HEADER_BYTES + 4 + (long) length * REFERENCE_BYTES);
+	}
+	
+	private static long align(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+}
@@ -0,0 +1,161 @@
+package com.anqit.util.lamqa.objects;
+
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * A fixed number of lazily computed values, one per index, all obtained from a single {@link IntFunction}.
+ * <p>
+ * Where a {@link LazyValue} per slot costs an object, a captured {@link java.util.function.Supplier} and their
+ * fields for every slot, a {@link LazyArray} stores only one array element per slot: the value itself once it is
+ * evaluated. Each slot is evaluated at most once, even when several threads {@link #get(int) get} it at the same
+ * time; threads getting other slots are not blocked. If the function throws, the slot is left unevaluated and the
+ * next call to {@link #get(int)} tries again.
+ *
+ * @param <T> the type of the values
+ */
+public class LazyArray<T> {
+	private final IntFunction<? extends T> valueFunction;
+	// each slot is null, a masked value, or the SlotEvaluation in progress
+	private final AtomicReferenceArray<Object> slots;
+	
+	private LazyArray(int size, IntFunction<? extends T> valueFunction) {
+		this.valueFunction = Objects.requireNonNull(valueFunction);
+		this.slots = new AtomicReferenceArray<>(size);
+	}
+	
+	/**
+	 * Create a {@link LazyArray} instance
+	 *
+	 * @param size the number of slots
+	 * @param valueFunction the function to call with an index to obtain the value of that slot
+	 *
+	 * @return a new {@link LazyArray} instance
+	 * @throws IllegalArgumentException if {@code size} is negative
+	 */
+	public static <T> LazyArray<T> of(int size, IntFunction<? extends T> valueFunction) {
+		if(size < 0) {
+			throw new IllegalArgumentException("the size of a LazyArray cannot be negative: " + size);
+		}
+		
+		return new LazyArray<>(size, valueFunction);
+	}
+	
+	/**
+	 * @return the number of slots
+	 */
+	public int size() {
+		return slots.length();
+	}
+	
+	/**
+	 * Return the value of a slot, evaluating it if this is the first call for that index
+	 *
+	 * @param index the index of the slot
+	 *
+	 * @return the value of the slot
+	 * @throws IndexOutOfBoundsException if {@code index} is out of range
+	 */
+	public T get(int index) {
+		Object slot = slots.get(index);
+		
+		return slot != null && !(slot instanceof SlotEvaluation) ? LazyValue.unmask(slot) : evaluate(index);
+	}
+	
+	/**
+	 * @param index the index of the slot
+	 *
+	 * @return if the slot has been evaluated yet
+	 */
+	public boolean isEvaluated(int index) {
+		Object slot = slots.get(index);
+		
+		return slot != null && !(slot instanceof SlotEvaluation);
+	}
+	
+	/**
+	 * @return the indexes of the slots that have been evaluated so far
+	 */
+	public BitSet evaluated() {
+		BitSet evaluated = new BitSet(slots.length());
+		for(int i = 0; i < slots.length(); i++) {
+			if(isEvaluated(i)) {
+				evaluated.set(i);
+			}
+		}
+		
+		return evaluated;
+	}
+	
+	/**
+	 * @return the number of slots that have been evaluated so far
+	 */
+	public int evaluatedCount() {
+		int count = 0;
+		for(int i = 0; i < slots.length(); i++) {
+			if(isEvaluated(i)) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Refresh the value of a slot by calling the function again, waiting for an evaluation of the slot that is in
+	 * progress to finish first
+	 *
+	 * @param index the index of the slot
+	 *
+	 * @return {@code true} if the refreshed value changed as a result of calling the function (determined by
+	 * 		{@link Objects#equals(Object)}), {@code false} otherwise
+	 */
+	public boolean refresh(int index) {
+		Object refreshed = LazyValue.mask(valueFunction.apply(index));
+		while(true) {
+			Object slot = slots.get(index);
+			if(slot instanceof SlotEvaluation) {
+				((SlotEvaluation) slot).await();
+			} else if(slots.compareAndSet(index, slot, refreshed)) {
+				return slot == null || !Objects.equals(LazyValue.unmask(slot), LazyValue.unmask(refreshed));
+			}
+		}
+	}
+	
+	/**
+	 * Estimate the memory used by this container, not counting the values themselves or the function: this object and
+	 * its array of slots
+	 *
+	 * @return the estimated size, in bytes
+	 */
+	public long getFootprintBytes() {
+		return Footprint.object(2, 0) + Footprint.object(1, 0) + Footprint.referenceArray(slots.length());
+	}
+	
+	private T evaluate(int index) {
+		while(true) {
+			Object slot = slots.get(index);
+			if(slot instanceof SlotEvaluation) {
+				((SlotEvaluation) slot).await();
+			} else if(slot != null) {
+				return LazyValue.unmask(slot);
+			} else {
+				SlotEvaluation evaluation = new SlotEvaluation("a LazyArray slot depends on its own value");
+				if(slots.compareAndSet(index, null, evaluation)) {
+					Object value = null;
+					try {
+						value = LazyValue.mask(valueFunction.apply(index));
+						
+						return LazyValue.unmask(value);
+					} finally {
+						// a failed evaluation leaves the slot empty, to be tried again
+						slots.compareAndSet(index, evaluation, value);
+						evaluation.finish();
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.anqit.util.lamqa.objects;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The graph of {@link LazyValue}s reachable from a set of values through their dependencies, evaluated with as
+ * much parallelism as the dependencies allow.
+ */
+class LazyGraph {
+	private final Map<LazyValue<?>, Node> nodes = new IdentityHashMap<>();
+	
+	/**
+	 * Build the graph of the given values and their transitive dependencies
+	 * 
+	 * @param roots the values to evaluate
+	 * @throws IllegalArgumentException if the dependencies contain a cycle
+	 */
+	LazyGraph(List<LazyValue<?>> roots) {
+		for(LazyValue<?> root : roots) {
+			visit(root);
+		}
+	}
+	
+	/**
+	 * Evaluate every value in the graph, starting each one as soon as its dependencies have been evaluated
+	 * 
+	 * @param executor the {@link Executor} to evaluate values on
+	 * @return a {@link CompletableFuture} that completes when every value has been evaluated
+	 */
+	CompletableFuture<Void> initialize(Executor executor) {
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		AtomicInteger outstanding = new AtomicInteger(nodes.size());
+		if(nodes.isEmpty()) {
+			done.complete(null);
+		}
+		
+		for(Node node : nodes.values()) {
+			if(node.waitingOn.get() == 0) {
+				node.schedule(executor, outstanding, done);
+			}
+		}
+		
+		return done;
+	}
+	
+	private Node visit(LazyValue<?> value) {
+		Node node = nodes.get(value);
+		if(node != null) {
+			// a node that is still being visited is one of the values that depend on this one
+			if(!node.visited) {
+				throw new IllegalArgumentException("LazyValue dependencies contain a cycle");
+			}
+			return node;
+		}
+		
+		node = new Node(value);
+		nodes.put(value, node);
+		
+		for(LazyValue<?> dependency : value.getDependencies()) {
+			Node dependencyNode = visit(dependency);
+			if(dependencyNode.value.isNotEvaluated()) {
+				dependencyNode.dependents.add(node);
+				node.waitingOn.incrementAndGet();
+			}
+		}
+		
+		node.visited = true;
+		
+		return node;
+	}
+	
+	private static class Node {
+		final LazyValue<?> value;
+		final List<Node> dependents = new ArrayList<>();
+		final AtomicInteger waitingOn = new AtomicInteger();
+		boolean visited = false;
+		
+		Node(LazyValue<?> value) {
+			this.value = value;
+		}
+		
+		void schedule(Executor executor, AtomicInteger outstanding, CompletableFuture<Void> done) {
+			if(done.isDone()) {
+				return;
+			}
+			
+			try {
+				executor.execute(() -> evaluate(executor, outstanding, done));
+			} catch (RejectedExecutionException e) {
+				done.completeExceptionally(e);
+			}
+		}
+		
+		private void evaluate(Executor executor, AtomicInteger outstanding, CompletableFuture<Void> done) {
+			try {
+				value.get();
+			} catch (Throwable t) {
+				done.completeExceptionally(t);
+				return;
+			}
+			
+			for(Node dependent : dependents) {
+				if(dependent.waitingOn.decrementAndGet() == 0) {
+					dependent.schedule(executor, outstanding, done);
+				}
+			}
+			if(outstanding.decrementAndGet() == 0) {
+				done.complete(null);
+			}
+		}
+	}
+}
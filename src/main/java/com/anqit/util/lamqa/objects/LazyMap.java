@@ -0,0 +1,162 @@
+package com.anqit.util.lamqa.objects;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Lazily computed values by key, all obtained from a single {@link Function}.
+ * <p>
+ * The {@link LazyArray} counterpart for keys that are not dense indexes: only the keys that have been
+ * {@link #get(Object) got} take up an entry, holding the value itself rather than a {@link LazyValue}. Each key is
+ * evaluated at most once, even when several threads get it at the same time; threads getting other keys are not
+ * blocked. If the function throws, the key is left unevaluated and the next call to {@link #get(Object)} tries again.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class LazyMap<K, V> {
+	private final Function<? super K, ? extends V> valueFunction;
+	// each entry is a masked value, or the SlotEvaluation in progress
+	private final ConcurrentHashMap<K, Object> slots = new ConcurrentHashMap<>();
+	
+	private LazyMap(Function<? super K, ? extends V> valueFunction) {
+		this.valueFunction = Objects.requireNonNull(valueFunction);
+	}
+	
+	/**
+	 * Create a {@link LazyMap} instance
+	 *
+	 * @param valueFunction the function to call with a key to obtain its value
+	 *
+	 * @return a new {@link LazyMap} instance
+	 */
+	public static <K, V> LazyMap<K, V> of(Function<? super K, ? extends V> valueFunction) {
+		return new LazyMap<>(valueFunction);
+	}
+	
+	/**
+	 * Return the value for a key, evaluating it if this is the first call for that key
+	 *
+	 * @param key the key, which cannot be {@code null}
+	 *
+	 * @return the value for the key
+	 */
+	public V get(K key) {
+		Object slot = slots.get(key);
+		
+		return slot != null && !(slot instanceof SlotEvaluation) ? LazyValue.unmask(slot) : evaluate(key);
+	}
+	
+	/**
+	 * @param key the key
+	 *
+	 * @return if the value for the key has been evaluated yet
+	 */
+	public boolean isEvaluated(K key) {
+		Object slot = slots.get(key);
+		
+		return slot != null && !(slot instanceof SlotEvaluation);
+	}
+	
+	/**
+	 * @return the keys whose values have been evaluated so far
+	 */
+	public Set<K> evaluatedKeys() {
+		Set<K> evaluated = new HashSet<>();
+		for(Map.Entry<K, Object> entry : slots.entrySet()) {
+			if(!(entry.getValue() instanceof SlotEvaluation)) {
+				evaluated.add(entry.getKey());
+			}
+		}
+		
+		return evaluated;
+	}
+	
+	/**
+	 * @return the number of keys whose values have been evaluated so far
+	 */
+	public int evaluatedCount() {
+		int count = 0;
+		for(Object slot : slots.values()) {
+			if(!(slot instanceof SlotEvaluation)) {
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Refresh the value for a key by calling the function again, waiting for an evaluation of the key that is in
+	 * progress to finish first
+	 *
+	 * @param key the key
+	 *
+	 * @return {@code true} if the refreshed value changed as a result of calling the function (determined by
+	 * 		{@link Objects#equals(Object)}), {@code false} otherwise
+	 */
+	public boolean refresh(K key) {
+		Object refreshed = LazyValue.mask(valueFunction.apply(key));
+		while(true) {
+			Object slot = slots.get(key);
+			if(slot instanceof SlotEvaluation) {
+				((SlotEvaluation) slot).await();
+			} else if(slot == null ? slots.putIfAbsent(key, refreshed) == null : slots.replace(key, slot, refreshed)) {
+				return slot == null || !Objects.equals(LazyValue.unmask(slot), LazyValue.unmask(refreshed));
+			}
+		}
+	}
+	
+	/**
+	 * Estimate the memory used by this container, not counting the keys, the values or the function: this object,
+	 * its hash table and one entry per key
+	 *
+	 * @return the estimated size, in bytes
+	 */
+	public long getFootprintBytes() {
+		int entries = slots.size();
+		long bytes = Footprint.object(2, 0) + Footprint.object(6, 5) + entries * Footprint.object(3, 1);
+		if(entries > 0) {
+			int tableSize = 16;
+			while(entries > tableSize - (tableSize >>> 2)) {
+				tableSize <<= 1;
+			}
+			bytes += Footprint.referenceArray(tableSize);
+		}
+		
+		return bytes;
+	}
+	
+	private V evaluate(K key) {
+		while(true) {
+			Object slot = slots.get(key);
+			if(slot instanceof SlotEvaluation) {
+				((SlotEvaluation) slot).await();
+			} else if(slot != null) {
+				return LazyValue.unmask(slot);
+			} else {
+				SlotEvaluation evaluation = new SlotEvaluation("a LazyMap value depends on its own key");
+				if(slots.putIfAbsent(key, evaluation) == null) {
+					Object value = null;
+					try {
+						value = LazyValue.mask(valueFunction.apply(key));
+						
+						return LazyValue.unmask(value);
+					} finally {
+						// a failed evaluation leaves the key unevaluated, to be tried again
+						if(value == null) {
+							slots.remove(key, evaluation);
+						} else {
+							slots.replace(key, evaluation, value);
+						}
+						evaluation.finish();
+					}
+				}
+			}
+		}
+	}
+}
@@ -1,6 +1,22 @@
 package com.anqit.util.lamqa.objects;
 
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
@@ -10,16 +26,62 @@ import java.util.function.Supplier;
  * The {@link Supplier} is run only the first time the value is requested (using {@link #get()}). The result
  * is cached and returned by each subsequent call to {@link #get()}, even if the value obtained from the 
  * {@link Supplier} was null 
+ * <p>
+ * Instances are thread-safe: concurrent callers of {@link #get()} wait for a single evaluation of the
+ * {@link Supplier}, and once evaluated the value is read without locking.
+ * <p>
+ * {@link LazyValue}s derived from others with {@link #map(Function)}, {@link #zip(LazyValue, BiFunction)} and
+ * {@link #flatMap(Function)}, or declared with {@link #dependsOn(LazyValue...)}, record their dependencies, so a
+ * whole graph of them can be evaluated in parallel with {@link #initializeAll(Executor, LazyValue...)}.
+ * <p>
+ * The same dependencies are used to keep derived values up to date. When a value is {@link #invalidate() invalidated},
+ * {@link #update(Supplier) updated}, or {@link #refresh() refreshed} to a different value, the values that depend on
+ * it, directly or not, are marked stale. A stale value is checked on its next {@link #get()}: it is only recomputed if
+ * a value it depends on has actually changed (by {@link Objects#equals(Object)}), so a change that makes no difference
+ * stops there rather than recomputing everything derived from it.
+ * <p>
+ * Values that are large but cheap enough to recompute can be held {@link #softly(Supplier) softly},
+ * {@link #weakly(Supplier) weakly}, or within a {@link MemoryBudget}, in which case they may be released and are
+ * evaluated again by the next call to {@link #get()}.
+ * <p>
+ * Callers that must not block on the first evaluation can use an {@link AsyncLazyValue} instead.
+ * Large tables of values computed by the same function can use a {@link LazyArray} or {@link LazyMap}, which keep no
+ * {@link LazyValue} per slot.
  *
  * @param <T> the type of the value
  */
-public class LazyValue<T> {
-	private T value;
+public class LazyValue<T> extends Publication {
+	private static final Object NULL = new Object();
+	private static final Object RELEASED = new Object();
+	private static final long[] NO_REVISIONS = new long[0];
+	private static final AtomicLong REVISIONS = new AtomicLong();
+	private static final int MIN_PRUNE_AT = 16;
+	
 	private Supplier<T> valueSupplier;
-	private boolean evaluated = false;
+	private volatile List<LazyValue<?>> dependencies;
+	private final Retention retention;
+	// the values that depend on this one; also the lock guarding the list
+	private final List<WeakReference<LazyValue<?>>> dependents = new ArrayList<>();
+	// the size of the list at which cleared references are next removed from it
+	private int pruneAt = MIN_PRUNE_AT;
+	// the revision at which this value last changed, or 0 if it has not been evaluated
+	private volatile long changedAt = 0;
+	// the revision of each dependency when this value was last computed
+	private long[] seenRevisions = NO_REVISIONS;
+	// while stale, what was published before, kept to check whether it is still up to date
+	private Object stale;
+	// whether the Supplier must be called again, rather than only if a dependency changed
+	private boolean invalidated = false;
 
 	private LazyValue(T value) { this(() -> value); }
-	private LazyValue(Supplier<T> valueSupplier) { this.valueSupplier = valueSupplier; }
+	private LazyValue(Supplier<T> valueSupplier) { this(valueSupplier, Collections.emptyList(), null); }
+	LazyValue(Supplier<T> valueSupplier, Retention retention) { this(valueSupplier, Collections.emptyList(), retention); }
+	private LazyValue(Supplier<T> valueSupplier, List<LazyValue<?>> dependencies) { this(valueSupplier, dependencies, null); }
+	private LazyValue(Supplier<T> valueSupplier, List<LazyValue<?>> dependencies, Retention retention) {
+		this.valueSupplier = valueSupplier;
+		this.dependencies = dependencies;
+		this.retention = retention;
+	}
 	
 	/**
 	 * Create a {@link LazyValue} instance of the given value
@@ -43,24 +105,168 @@ public class LazyValue<T> {
 		return new LazyValue<>(valueSupplier);
 	}
 	
+	/**
+	 * Create a {@link LazyValue} instance that only holds on to its value through a {@link java.lang.ref.SoftReference}.
+	 * If the garbage collector clears it, the next call to {@link #get()} invokes the {@link Supplier} again.
+	 * 
+	 * @param valueSupplier the {@link Supplier} function to call to obtain the value
+	 * 
+	 * @return a new {@link LazyValue} instance
+	 */
+	public static <T> LazyValue<T> softly(Supplier<T> valueSupplier) {
+		return new LazyValue<>(valueSupplier, Retention.softly());
+	}
+	
+	/**
+	 * Create a {@link LazyValue} instance that only holds on to its value through a {@link java.lang.ref.WeakReference}.
+	 * If the garbage collector clears it, the next call to {@link #get()} invokes the {@link Supplier} again.
+	 * 
+	 * @param valueSupplier the {@link Supplier} function to call to obtain the value
+	 * 
+	 * @return a new {@link LazyValue} instance
+	 */
+	public static <T> LazyValue<T> weakly(Supplier<T> valueSupplier) {
+		return new LazyValue<>(valueSupplier, Retention.weakly());
+	}
+	
+	/**
+	 * Create a {@link LazyValue} instance whose value is persisted in a file across JVM restarts. See
+	 * {@link PersistentSupplier} for how the file is used.
+	 * 
+	 * @param file the file to persist the value in
+	 * @param fingerprint identifies the value; a persisted value is only used if it was stored with the same fingerprint
+	 * @param serializer converts the value to and from bytes
+	 * @param valueSupplier the {@link Supplier} function to call when there is no usable persisted value
+	 * 
+	 * @return a new {@link LazyValue} instance
+	 */
+	public static <T> LazyValue<T> persistent(Path file, String fingerprint, ValueSerializer<T> serializer, 
+			Supplier<T> valueSupplier) {
+		return of(PersistentSupplier.of(file, fingerprint, serializer, valueSupplier));
+	}
+	
+	/**
+	 * Evaluate the given {@link LazyValue}s and everything they depend on, running independent values in parallel
+	 * on the given {@link Executor}. A value is only evaluated once all of its dependencies have been, and values
+	 * that are already evaluated are not re-evaluated.
+	 * 
+	 * @param executor
+	 * 		the {@link Executor} to evaluate the values on
+	 * @param values
+	 * 		the values to evaluate
+	 * @return
+	 * 		a {@link CompletableFuture} that completes when every value has been evaluated, or exceptionally
+	 * 		with the first exception thrown by a {@link Supplier}
+	 * @throws IllegalArgumentException if the dependencies of the values contain a cycle
+	 */
+	public static CompletableFuture<Void> initializeAll(Executor executor, LazyValue<?>... values) {
+		return new LazyGraph(Arrays.asList(values)).initialize(executor);
+	}
+	
+	/**
+	 * Create a {@link LazyValue} whose value is the result of applying the given function to this value
+	 * 
+	 * @param mapper
+	 * 		the function to apply to this value
+	 * @return
+	 * 		a new {@link LazyValue} that depends on this one
+	 */
+	public <U> LazyValue<U> map(Function<? super T, ? extends U> mapper) {
+		Objects.requireNonNull(mapper);
+		
+		return derived(() -> mapper.apply(get()), Collections.singletonList(this));
+	}
+	
+	/**
+	 * Create a {@link LazyValue} whose value is the result of combining this value with another
+	 * 
+	 * @param other
+	 * 		the {@link LazyValue} to combine this one with
+	 * @param combiner
+	 * 		the function to combine the two values
+	 * @return
+	 * 		a new {@link LazyValue} that depends on this one and {@code other}
+	 */
+	public <U, V> LazyValue<V> zip(LazyValue<U> other, BiFunction<? super T, ? super U, ? extends V> combiner) {
+		Objects.requireNonNull(combiner);
+		
+		return derived(() -> combiner.apply(get(), other.get()), 
+				Collections.unmodifiableList(Arrays.asList(this, other)));
+	}
+	
+	/**
+	 * Create a {@link LazyValue} whose value is obtained from the {@link LazyValue} that the given function returns
+	 * for this value. Only the dependency on this value is recorded, since the other is not known until evaluation.
+	 * 
+	 * @param mapper
+	 * 		the function to apply to this value
+	 * @return
+	 * 		a new {@link LazyValue} that depends on this one
+	 */
+	public <U> LazyValue<U> flatMap(Function<? super T, ? extends LazyValue<? extends U>> mapper) {
+		Objects.requireNonNull(mapper);
+		
+		return derived(() -> mapper.apply(get()).get(), Collections.singletonList(this));
+	}
+	
+	/**
+	 * Declare that this value's {@link Supplier} uses the given {@link LazyValue}s, so that
+	 * {@link #initializeAll(Executor, LazyValue...)} evaluates them first, and so that this value is marked stale
+	 * when they change. Values this one already depends on are ignored.
+	 * 
+	 * @param others
+	 * 		the values this one depends on
+	 * @return
+	 * 		this instance
+	 */
+	public LazyValue<T> dependsOn(LazyValue<?>... others) {
+		List<LazyValue<?>> added = new ArrayList<>(others.length);
+		synchronized(this) {
+			List<LazyValue<?>> newDependencies = new ArrayList<>(dependencies);
+			for(LazyValue<?> other : others) {
+				if(!newDependencies.contains(other)) {
+					newDependencies.add(other);
+					added.add(other);
+				}
+			}
+			dependencies = Collections.unmodifiableList(newDependencies);
+		}
+		for(LazyValue<?> other : added) {
+			other.addDependent(this);
+		}
+		
+		return this;
+	}
+	
+	/**
+	 * @return the {@link LazyValue}s this value depends on
+	 */
+	public List<LazyValue<?>> getDependencies() {
+		return dependencies;
+	}
+	
 	/**
 	 * Get the value, calling the provided {@link Supplier} if the value has not been obtained yet
 	 * 
 	 * @return the obtained value
 	 */
 	public T get() {
-		if(isNotEvaluated()) {
-			value = invoke();
+		Object published = acquire();
+		if(retention != null) {
+			return unmask(retained(published));
+		} else if(published == null) {
+			published = evaluate();
 		}
 		
-		return value;
+		return unmask(published);
 	}
 	
 	/**
-	 * @return if the {@link Supplier} has been evaluated yet
+	 * @return if the {@link Supplier} has been evaluated yet (and its value has not since been released or marked
+	 * 		stale)
 	 */
 	public boolean isEvaluated() {
-		return evaluated;
+		return peek(acquire()) != null;
 	}
 	
 	/**
@@ -71,21 +277,65 @@ public class LazyValue<T> {
 	}
 	
 	/**
-	 * Refresh the value by re-invoking the {@link Supplier}
+	 * Refresh the value by re-invoking the {@link Supplier}. If the value changed, the values that depend on this one
+	 * are marked stale.
 	 * 
 	 * @return {@code true} if the refreshed value changed as a result of re-invoking the {@link Supplier}
 	 * 		(determined by {@link Objects#equals(Object)}), {@code false} otherwise.
 	 */
 	public boolean refresh() {
-		T newValue = invoke();
-				
-		boolean hasChanged = !Objects.equals(newValue, value);
-
-		value = newValue;
+		Object refreshed;
+		boolean hasChanged;
+		synchronized(this) {
+			Object published = acquire();
+			Object previous = peek(published == null ? stale : published);
+			T value = previous == null ? null : unmask(previous);
+			long[] revisions = observeDependencies();
+			Object event = LazyValueEvents.evaluationStarted();
+			T newValue = valueSupplier.get();
+			LazyValueEvents.evaluationFinished(event, true, newValue);
+			
+			hasChanged = !Objects.equals(newValue, value);
+			
+			refreshed = mask(newValue);
+			release(hold(refreshed));
+			if(retention != null) {
+				retention.published(this, refreshed);
+			}
+			evaluated(revisions, hasChanged || changedAt == 0);
+		}
+		
+		if(retention != null) {
+			retention.admitted(this, refreshed);
+		}
+		if(hasChanged) {
+			markDependentsStale();
+		}
 
 		return hasChanged;
 	}
 	
+	/**
+	 * Mark the value stale, so that the next call to {@link #get()} invokes the {@link Supplier} again, and mark the
+	 * values that depend on it stale, so that they are checked on their next call to {@link #get()}. Only the values
+	 * whose dependencies actually changed are recomputed.
+	 */
+	public void invalidate() {
+		synchronized(this) {
+			invalidated = true;
+			markStale();
+		}
+		markDependentsStale();
+	}
+	
+	/**
+	 * @return the number of times the value was evaluated again after being released, either by the garbage
+	 * 		collector or to stay within a {@link MemoryBudget}. Always 0 for values that are held strongly.
+	 */
+	public long getReclaimCount() {
+		return retention == null ? 0 : retention.getReclaimCount();
+	}
+	
 	/**
 	 * Update the {@link Supplier} used to obtain the value on subsequent calls to {@link #get()}.
 	 * Resets the "evaluated" state, so that the next call to {@link #get()} will run the {@link Supplier}
@@ -94,16 +344,210 @@ public class LazyValue<T> {
 	 * @return this instance
 	 */
 	public LazyValue<T> update(Supplier<T> newSupplier) {
-		this.valueSupplier = newSupplier;
-		evaluated = false;
+		synchronized(this) {
+			this.valueSupplier = newSupplier;
+			invalidated = true;
+			markStale();
+			if(retention != null) {
+				retention.forgotten(this);
+			}
+		}
+		markDependentsStale();
 		
 		return this;
 	}
 	
-	private T invoke() {
-		T t = valueSupplier.get();
-		evaluated = true;
+	/**
+	 * Release the value, if it is held, so that the next call to {@link #get()} evaluates it again
+	 */
+	synchronized void reclaim() {
+		if(retention != null && !retention.mayRelease(this)) {
+			return;
+		} else if(acquire() != null) {
+			release(RELEASED);
+		} else if(stale != null) {
+			stale = RELEASED;
+		}
+	}
+	
+	private Object retained(Object published) {
+		Object value = peek(published);
+		if(value == null) {
+			value = evaluate();
+			retention.admitted(this, value);
+		} else {
+			retention.touched(this);
+		}
+		
+		return value;
+	}
+	
+	private synchronized Object evaluate() {
+		Object published = acquire();
+		Object value = peek(published);
+		if(value != null) {
+			return value;
+		} else if(published != null && retention != null) {
+			retention.reclaimed();
+		}
+		
+		// a stale value that is still up to date is published again as it is
+		boolean recompute = stale == null || invalidated || dependenciesChanged();
+		Object previous = stale == null ? null : peek(stale);
+		if(!recompute && previous != null) {
+			release(stale);
+			stale = null;
+			
+			return previous;
+		}
+		
+		long[] revisions = observeDependencies();
+		value = peek(acquire());
+		if(value != null) {
+			// evaluated by a dependency that also depends on this value
+			return value;
+		}
+		
+		Object event = LazyValueEvents.evaluationStarted();
+		T supplied = valueSupplier.get();
+		LazyValueEvents.evaluationFinished(event, false, supplied);
+		
+		value = mask(supplied);
+		release(hold(value));
+		if(retention != null) {
+			retention.published(this, value);
+		}
+		// a value that was only released, or was stale but none of its dependencies changed, is the same as before
+		boolean changed = changedAt == 0 || (stale != null && recompute && (previous == null || !Objects.equals(unmask(previous), supplied)));
+		evaluated(revisions, changed);
+		
+		return value;
+	}
+	
+	/**
+	 * Record that the value has been computed from the given revisions of its dependencies. Must hold the lock.
+	 */
+	private void evaluated(long[] revisions, boolean changed) {
+		seenRevisions = revisions;
+		stale = null;
+		invalidated = false;
+		if(changed) {
+			changedAt = REVISIONS.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Bring the dependencies up to date and take their revisions, before computing this value from them. Must hold the
+	 * lock.
+	 */
+	private long[] observeDependencies() {
+		List<LazyValue<?>> dependencies = this.dependencies;
+		if(dependencies.isEmpty()) {
+			return NO_REVISIONS;
+		}
+		
+		long[] revisions = new long[dependencies.size()];
+		for(int i = 0; i < revisions.length; i++) {
+			LazyValue<?> dependency = dependencies.get(i);
+			// a dependency already being evaluated by this thread depends on this value, so it cannot be waited for
+			if(!Thread.holdsLock(dependency)) {
+				dependency.get();
+			}
+			revisions[i] = dependency.changedAt;
+		}
+		
+		return revisions;
+	}
+	
+	/**
+	 * @return {@code true} if any dependency changed since this value was computed. Must hold the lock.
+	 */
+	private boolean dependenciesChanged() {
+		long[] seen = seenRevisions;
+		long[] current = observeDependencies();
 		
-		return t;
+		return !Arrays.equals(seen, current);
+	}
+	
+	/**
+	 * Unpublish the value, keeping it to check on the next evaluation. Must hold the lock.
+	 */
+	private void markStale() {
+		Object published = acquire();
+		if(published != null) {
+			stale = published;
+			release(null);
+		}
+	}
+	
+	private void markDependentsStale() {
+		Set<LazyValue<?>> visited = new HashSet<>();
+		Deque<LazyValue<?>> pending = new ArrayDeque<>(liveDependents());
+		while(!pending.isEmpty()) {
+			LazyValue<?> dependent = pending.pop();
+			if(visited.add(dependent)) {
+				synchronized(dependent) {
+					dependent.markStale();
+				}
+				pending.addAll(dependent.liveDependents());
+			}
+		}
+	}
+	
+	private void addDependent(LazyValue<?> dependent) {
+		synchronized(dependents) {
+			// dependents that are never marked stale would otherwise leave their cleared references behind for good
+			if(dependents.size() >= pruneAt) {
+				dependents.removeIf(reference -> reference.get() == null);
+				pruneAt = Math.max(MIN_PRUNE_AT, dependents.size() * 2);
+			}
+			dependents.add(new WeakReference<>(dependent));
+		}
+	}
+	
+	private List<LazyValue<?>> liveDependents() {
+		synchronized(dependents) {
+			List<LazyValue<?>> live = new ArrayList<>(dependents.size());
+			for(Iterator<WeakReference<LazyValue<?>>> i = dependents.iterator(); i.hasNext(); ) {
+				LazyValue<?> dependent = i.next().get();
+				if(dependent == null) {
+					i.remove();
+				} else {
+					live.add(dependent);
+				}
+			}
+			
+			return live;
+		}
+	}
+	
+	private static <T> LazyValue<T> derived(Supplier<T> valueSupplier, List<LazyValue<?>> dependencies) {
+		LazyValue<T> value = new LazyValue<>(valueSupplier, dependencies);
+		for(LazyValue<?> dependency : dependencies) {
+			dependency.addDependent(value);
+		}
+		
+		return value;
+	}
+	
+	private Object hold(Object value) {
+		return retention == null ? value : retention.hold(value);
+	}
+	
+	private Object peek(Object published) {
+		if(published == RELEASED) {
+			return null;
+		}
+		
+		return retention == null ? published : retention.peek(published);
+	}
+	
+	static Object mask(Object value) {
+		return value == null ? NULL : value;
+	}
+	
+	@SuppressWarnings("unchecked")
+	static <T> T unmask(Object published) {
+		return published == NULL ? null : (T) published;
 	}
 }
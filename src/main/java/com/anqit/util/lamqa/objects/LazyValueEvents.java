@@ -0,0 +1,29 @@
+package com.anqit.util.lamqa.objects;
+
+/**
+ * Records {@link LazyValue} evaluations as JDK Flight Recorder events.
+ * <p>
+ * Flight Recorder events need Java 11, so this implementation never records anything; on Java 11+ a version that
+ * records {@code com.anqit.lamqa.LazyValueEvaluation} events is used instead.
+ */
+final class LazyValueEvents {
+	private LazyValueEvents() { }
+	
+	/**
+	 * @return a token to pass to {@link #evaluationFinished(Object, boolean, Object)}, or {@code null} if the
+	 * 		evaluation is not recorded
+	 */
+	static Object evaluationStarted() {
+		return null;
+	}
+	
+	/**
+	 * @param evaluation
+	 * 		the token returned by {@link #evaluationStarted()}
+	 * @param refresh
+	 * 		whether the value was {@link LazyValue#refresh() refreshed}, rather than evaluated for the first time
+	 * @param value
+	 * 		the value the {@link java.util.function.Supplier Supplier} returned
+	 */
+	static void evaluationFinished(Object evaluation, boolean refresh, Object value) { }
+}
@@ -0,0 +1,177 @@
+package com.anqit.util.lamqa.objects;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * A limit on the combined size of the values of a group of {@link LazyValue}s.
+ * <p>
+ * Whenever a value in the group is evaluated and the group's values add up to more than the budget, the values
+ * that were least recently read are released until the group fits again (the most recently evaluated value is
+ * never released, even if it alone exceeds the budget). A released value is evaluated again on the next
+ * {@link LazyValue#get()}.
+ */
+public class MemoryBudget {
+	private final long maxBytes;
+	private final LinkedHashMap<LazyValue<?>, Long> resident = new LinkedHashMap<>(16, 0.75f, true);
+	// values taken out of the budget that have not been released yet
+	private final List<LazyValue<?>> evicted = new ArrayList<>();
+	private long usedBytes = 0;
+	private long releases = 0;
+	
+	private MemoryBudget(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+	
+	/**
+	 * Create a {@link MemoryBudget} instance
+	 * 
+	 * @param maxBytes
+	 * 		the maximum combined size of the values in the group
+	 * @return
+	 * 		a new {@link MemoryBudget} instance
+	 */
+	public static MemoryBudget of(long maxBytes) {
+		if(maxBytes < 0) {
+			throw new IllegalArgumentException("a memory budget cannot be negative: " + maxBytes);
+		}
+		
+		return new MemoryBudget(maxBytes);
+	}
+	
+	/**
+	 * Create a {@link LazyValue} in this group
+	 * 
+	 * @param valueSupplier
+	 * 		the {@link Supplier} function to call to obtain the value
+	 * @param sizeOf
+	 * 		estimates the size of a value, in bytes
+	 * @return
+	 * 		a new {@link LazyValue} instance
+	 */
+	public <T> LazyValue<T> lazyValue(Supplier<T> valueSupplier, ToLongFunction<? super T> sizeOf) {
+		Objects.requireNonNull(sizeOf);
+		
+		return new LazyValue<>(valueSupplier, new BudgetRetention<>(sizeOf));
+	}
+	
+	/**
+	 * @return the maximum combined size of the values in the group
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+	
+	/**
+	 * @return the combined size of the values currently held by the group
+	 */
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+	
+	/**
+	 * @return the number of values released to stay within the budget
+	 */
+	public synchronized long getReleaseCount() {
+		return releases;
+	}
+	
+	/**
+	 * Count a newly published value, and evict the least recently used values until the group fits. Called while
+	 * holding the value's lock, so that a value is always counted by the time another thread can reclaim it.
+	 */
+	private synchronized void account(LazyValue<?> lazyValue, long size) {
+		Long previous = resident.put(lazyValue, size);
+		usedBytes += size - (previous == null ? 0 : previous);
+		
+		Iterator<Map.Entry<LazyValue<?>, Long>> leastRecentlyUsed = resident.entrySet().iterator();
+		while(usedBytes > maxBytes && resident.size() > 1) {
+			Map.Entry<LazyValue<?>, Long> eldest = leastRecentlyUsed.next();
+			usedBytes -= eldest.getValue();
+			evicted.add(eldest.getKey());
+			leastRecentlyUsed.remove();
+			releases++;
+		}
+	}
+	
+	private void releaseEvicted() {
+		List<LazyValue<?>> released;
+		synchronized(this) {
+			if(evicted.isEmpty()) {
+				return;
+			}
+			released = new ArrayList<>(evicted);
+			evicted.clear();
+		}
+		
+		// released outside of this lock, since a LazyValue's lock is always taken before the budget's
+		released.forEach(LazyValue::reclaim);
+	}
+	
+	/**
+	 * @return {@code true} if the value is not counted by the budget, so releasing it cannot leave phantom bytes
+	 */
+	private synchronized boolean isEvicted(LazyValue<?> lazyValue) {
+		return !resident.containsKey(lazyValue);
+	}
+	
+	private synchronized void touch(LazyValue<?> lazyValue) {
+		resident.get(lazyValue);
+	}
+	
+	private synchronized void forget(LazyValue<?> lazyValue) {
+		Long size = resident.remove(lazyValue);
+		if(size != null) {
+			usedBytes -= size;
+		}
+	}
+	
+	private class BudgetRetention<T> extends Retention {
+		private final ToLongFunction<? super T> sizeOf;
+		
+		BudgetRetention(ToLongFunction<? super T> sizeOf) {
+			this.sizeOf = sizeOf;
+		}
+
+		@Override
+		Object hold(Object value) {
+			return value;
+		}
+
+		@Override
+		Object peek(Object held) {
+			return held;
+		}
+		
+		@Override
+		void touched(LazyValue<?> lazyValue) {
+			touch(lazyValue);
+		}
+		
+		@Override
+		void published(LazyValue<?> lazyValue, Object value) {
+			account(lazyValue, sizeOf.applyAsLong(LazyValue.unmask(value)));
+		}
+		
+		@Override
+		boolean mayRelease(LazyValue<?> lazyValue) {
+			return isEvicted(lazyValue);
+		}
+		
+		@Override
+		void admitted(LazyValue<?> lazyValue, Object value) {
+			releaseEvicted();
+		}
+		
+		@Override
+		void forgotten(LazyValue<?> lazyValue) {
+			forget(lazyValue);
+		}
+	}
+}
@@ -166,7 +166,7 @@ public class MoreOptional<T> {
         if (isAbsent()) {
         		return empty();
         } else {
-        		return of(wrapped.map(mapper));
+        		return ofNullable(mapper.apply(get()));
         }
 	}
 	
@@ -0,0 +1,196 @@
+package com.anqit.util.lamqa.objects;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import com.anqit.util.lamqa.trials.exception.ExceptionHandler;
+
+/**
+ * A {@link Supplier} that persists the value of another {@link Supplier} in a file, so that it survives JVM restarts.
+ * <p>
+ * The file is keyed by a caller-supplied fingerprint, such as a version or a hash of the inputs the value is derived
+ * from. If the file holds a value with the same fingerprint, it is memory-mapped and handed to the
+ * {@link ValueSerializer} without copying. Otherwise, or if the file is missing, truncated or corrupt, the value is
+ * obtained from the wrapped {@link Supplier} and written to a temporary file that then atomically replaces the old one.
+ * <p>
+ * Problems reading or writing the file never fail {@link #get()}; they are reported to the
+ * {@link #onError(ExceptionHandler) error handler} as {@link IOException}s. A missing file is not a problem, just
+ * the first run. Exceptions thrown by the wrapped {@link Supplier} propagate to the caller of {@link #get()}.
+ *
+ * @param <T> the type of the value
+ */
+public class PersistentSupplier<T> implements Supplier<T> {
+	private static final int MAGIC = 0x4C4D5141;
+	private static final int FORMAT = 1;
+	// magic, format, fingerprint length, payload length, checksum
+	private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 4;
+	
+	private final Path file;
+	private final byte[] fingerprint;
+	private final ValueSerializer<T> serializer;
+	private final Supplier<T> valueSupplier;
+	private ExceptionHandler errorHandler = ExceptionHandler.NOOP;
+	
+	private PersistentSupplier(Path file, String fingerprint, ValueSerializer<T> serializer, Supplier<T> valueSupplier) {
+		this.file = Objects.requireNonNull(file);
+		this.fingerprint = fingerprint.getBytes(StandardCharsets.UTF_8);
+		this.serializer = Objects.requireNonNull(serializer);
+		this.valueSupplier = Objects.requireNonNull(valueSupplier);
+	}
+	
+	/**
+	 * Create a {@link PersistentSupplier} instance
+	 * 
+	 * @param file
+	 * 		the file to persist the value in
+	 * @param fingerprint
+	 * 		identifies the value; a persisted value is only used if it was stored with the same fingerprint
+	 * @param serializer
+	 * 		converts the value to and from bytes
+	 * @param valueSupplier
+	 * 		the {@link Supplier} to call when there is no usable persisted value
+	 * 
+	 * @return a new {@link PersistentSupplier} instance
+	 */
+	public static <T> PersistentSupplier<T> of(Path file, String fingerprint, ValueSerializer<T> serializer,
+			Supplier<T> valueSupplier) {
+		return new PersistentSupplier<>(file, fingerprint, serializer, valueSupplier);
+	}
+	
+	/**
+	 * Set the handler for problems reading or writing the file
+	 * 
+	 * @param errorHandler
+	 * 		the {@link ExceptionHandler} to call with each problem
+	 * @return
+	 * 		this instance
+	 */
+	public PersistentSupplier<T> onError(ExceptionHandler errorHandler) {
+		this.errorHandler = Objects.requireNonNull(errorHandler);
+		
+		return this;
+	}
+	
+	/**
+	 * Get the persisted value if it is usable, otherwise obtain and persist a new one
+	 * 
+	 * @return the value
+	 */
+	@Override
+	public T get() {
+		try {
+			return load();
+		} catch (NoSuchFileException e) {
+			// nothing has been persisted yet
+		} catch (IOException e) {
+			errorHandler.handle(e);
+		}
+		
+		return computeAndStore();
+	}
+	
+	private T load() throws IOException {
+		MappedByteBuffer mapped;
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if(size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+				throw new IOException(file + " has an invalid size: " + size);
+			}
+			mapped = channel.map(MapMode.READ_ONLY, 0, size);
+		}
+		
+		if(mapped.getInt() != MAGIC || mapped.getInt() != FORMAT) {
+			throw new IOException(file + " is not a persisted value");
+		}
+		
+		int fingerprintLength = mapped.getInt();
+		long payloadLength = mapped.getLong();
+		int checksum = mapped.getInt();
+		if(fingerprintLength < 0 || payloadLength < 0 || HEADER_SIZE + fingerprintLength + payloadLength != mapped.limit()) {
+			throw new IOException(file + " is truncated or corrupt");
+		}
+		
+		byte[] storedFingerprint = new byte[fingerprintLength];
+		mapped.get(storedFingerprint);
+		if(!Arrays.equals(storedFingerprint, fingerprint)) {
+			throw new IOException(file + " holds a value with a different fingerprint");
+		}
+		
+		ByteBuffer payload = mapped.slice().asReadOnlyBuffer();
+		if(checksum(payload.duplicate()) != checksum) {
+			throw new IOException(file + " is corrupt");
+		}
+		
+		try {
+			return serializer.deserialize(payload);
+		} catch (RuntimeException e) {
+			throw new IOException("could not deserialize the value in " + file, e);
+		}
+	}
+	
+	private T computeAndStore() {
+		T value = valueSupplier.get();
+		
+		try {
+			store(value);
+		} catch (IOException e) {
+			errorHandler.handle(e);
+		} catch (RuntimeException e) {
+			errorHandler.handle(new IOException("could not serialize the value for " + file, e));
+		}
+		
+		return value;
+	}
+	
+	private void store(T value) throws IOException {
+		ByteBuffer payload = serializer.serialize(value);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC)
+			.putInt(FORMAT)
+			.putInt(fingerprint.length)
+			.putLong(payload.remaining())
+			.putInt(checksum(payload.duplicate()))
+			.flip();
+		
+		Path directory = file.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try {
+			try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				ByteBuffer[] contents = { header, ByteBuffer.wrap(fingerprint), payload };
+				long remaining = HEADER_SIZE + fingerprint.length + payload.remaining();
+				while(remaining > 0) {
+					remaining -= channel.write(contents);
+				}
+				channel.force(true);
+			}
+			
+			// the temporary file is in the same directory, so this only fails where atomic moves are not supported at
+			// all; the value is then not persisted rather than replaced in a way a reader could see half done
+			Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+	
+	private int checksum(ByteBuffer payload) {
+		CRC32 crc = new CRC32();
+		crc.update(fingerprint);
+		crc.update(payload);
+		
+		return (int) crc.getValue();
+	}
+}
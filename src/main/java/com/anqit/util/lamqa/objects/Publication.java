@@ -0,0 +1,28 @@
+package com.anqit.util.lamqa.objects;
+
+/**
+ * Holds a single reference that is written by one thread and safely read by others.
+ * <p>
+ * A {@code null} reference means nothing has been published yet, so subclasses must mask {@code null} values.
+ * This implementation uses a {@code volatile} field; on Java 9+ a {@code VarHandle} based version with
+ * acquire/release semantics is used instead.
+ */
+abstract class Publication {
+	private volatile Object published;
+	
+	/**
+	 * @return the last published reference, or {@code null} if nothing has been published
+	 */
+	final Object acquire() {
+		return published;
+	}
+	
+	/**
+	 * Publish a reference, making everything written before this call visible to threads that {@link #acquire()} it
+	 * 
+	 * @param value the reference to publish, or {@code null} to clear it
+	 */
+	final void release(Object value) {
+		published = value;
+	}
+}
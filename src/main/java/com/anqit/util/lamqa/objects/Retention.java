@@ -0,0 +1,105 @@
+package com.anqit.util.lamqa.objects;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+
+/**
+ * How a {@link LazyValue} holds on to its value, when it may let go of it before being refreshed or updated.
+ * Each {@link LazyValue} that is not held strongly forever has its own instance.
+ */
+abstract class Retention {
+	private volatile long reclaims = 0;
+	
+	/**
+	 * @param value the value to hold, already masked by {@link LazyValue}
+	 * @return what the {@link LazyValue} should publish to hold on to the value
+	 */
+	abstract Object hold(Object value);
+	
+	/**
+	 * @param held what the {@link LazyValue} published, as returned by {@link #hold(Object)}
+	 * @return the held value, or {@code null} if it has been let go of
+	 */
+	abstract Object peek(Object held);
+	
+	/**
+	 * Called each time a held value is read
+	 * 
+	 * @param lazyValue the {@link LazyValue} that was read
+	 */
+	void touched(LazyValue<?> lazyValue) { }
+	
+	/**
+	 * Called, while holding the {@link LazyValue}'s lock, when a value that has just been evaluated or refreshed is
+	 * published
+	 * 
+	 * @param lazyValue the {@link LazyValue} that was evaluated
+	 * @param value the new value, already masked by {@link LazyValue}
+	 */
+	void published(LazyValue<?> lazyValue, Object value) { }
+	
+	/**
+	 * Called, while holding the {@link LazyValue}'s lock, before {@link LazyValue#reclaim()} releases the value
+	 * 
+	 * @param lazyValue the {@link LazyValue} being reclaimed
+	 * @return {@code true} if the value may still be released
+	 */
+	boolean mayRelease(LazyValue<?> lazyValue) {
+		return true;
+	}
+	
+	/**
+	 * Called, without holding the {@link LazyValue}'s lock, after the value has been evaluated or refreshed
+	 * 
+	 * @param lazyValue the {@link LazyValue} that was evaluated
+	 * @param value the new value, already masked by {@link LazyValue}
+	 */
+	void admitted(LazyValue<?> lazyValue, Object value) { }
+	
+	/**
+	 * Called when the {@link LazyValue}'s {@link java.util.function.Supplier} is replaced
+	 * 
+	 * @param lazyValue the {@link LazyValue} that was updated
+	 */
+	void forgotten(LazyValue<?> lazyValue) { }
+	
+	/**
+	 * Count a re-evaluation of a value that was let go of. Only called while holding the {@link LazyValue}'s lock.
+	 */
+	final void reclaimed() {
+		reclaims++;
+	}
+	
+	/**
+	 * @return the number of times the value was evaluated again after being let go of
+	 */
+	final long getReclaimCount() {
+		return reclaims;
+	}
+	
+	static Retention softly() {
+		return new ReferenceRetention() {
+			@Override
+			Object hold(Object value) {
+				return new SoftReference<>(value);
+			}
+		};
+	}
+	
+	static Retention weakly() {
+		return new ReferenceRetention() {
+			@Override
+			Object hold(Object value) {
+				return new WeakReference<>(value);
+			}
+		};
+	}
+	
+	private abstract static class ReferenceRetention extends Retention {
+		@Override
+		Object peek(Object held) {
+			return held instanceof Reference ? ((Reference<?>) held).get() : null;
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package com.anqit.util.lamqa.objects;
+
+/**
+ * Marks a slot of a {@link LazyArray} or {@link LazyMap} whose value is being computed, for other threads to wait on.
+ * Only exists while the value is computed, so a slot costs nothing extra once it is evaluated.
+ */
+final class SlotEvaluation {
+	private final Thread owner = Thread.currentThread();
+	private final String cycleMessage;
+	private boolean finished = false;
+	
+	SlotEvaluation(String cycleMessage) {
+		this.cycleMessage = cycleMessage;
+	}
+	
+	/**
+	 * Wait for the evaluation to finish, whether it succeeds or not
+	 * 
+	 * @throws IllegalStateException if called by the thread computing the value, which would never finish
+	 */
+	synchronized void await() {
+		if(owner == Thread.currentThread()) {
+			throw new IllegalStateException(cycleMessage);
+		}
+		
+		boolean interrupted = false;
+		while(!finished) {
+			try {
+				wait();
+			} catch(InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	synchronized void finish() {
+		finished = true;
+		notifyAll();
+	}
+}
@@ -0,0 +1,69 @@
+package com.anqit.util.lamqa.objects;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts values to and from bytes, for {@link PersistentSupplier}s
+ *
+ * @param <T> the type of the values
+ */
+public interface ValueSerializer<T> {
+	/**
+	 * Convert a value to bytes
+	 * 
+	 * @param value
+	 * 		the value to convert
+	 * @return
+	 * 		a buffer whose remaining bytes represent the value
+	 * @throws IOException
+	 */
+	ByteBuffer serialize(T value) throws IOException;
+	
+	/**
+	 * Convert bytes back to a value. The buffer may be a read-only view of a memory-mapped file, which the returned
+	 * value is free to keep slices of instead of copying
+	 * 
+	 * @param bytes
+	 * 		a buffer whose remaining bytes represent the value
+	 * @return
+	 * 		the value
+	 * @throws IOException
+	 * 		if the bytes do not represent a value
+	 */
+	T deserialize(ByteBuffer bytes) throws IOException;
+	
+	/**
+	 * A {@link ValueSerializer} that uses Java serialization
+	 * 
+	 * @return
+	 * 		a {@link ValueSerializer} for {@link Serializable} values
+	 */
+	static <T extends Serializable> ValueSerializer<T> serializable() {
+		return new ValueSerializer<T>() {
+			@Override
+			public ByteBuffer serialize(T value) throws IOException {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+					out.writeObject(value);
+				}
+				
+				return ByteBuffer.wrap(bytes.toByteArray());
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public T deserialize(ByteBuffer bytes) throws IOException {
+				try(ObjectInputStream in = new ObjectInputStream(new ByteBufferInputStream(bytes))) {
+					return (T) in.readObject();
+				} catch (ClassNotFoundException | ClassCastException e) {
+					throw new IOException(e);
+				}
+			}
+		};
+	}
+}
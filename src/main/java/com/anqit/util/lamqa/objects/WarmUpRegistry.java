@@ -0,0 +1,169 @@
+package com.anqit.util.lamqa.objects;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A registry of {@link LazyValue}s to evaluate in the background, before anything calls {@link LazyValue#get()}
+ * on them.
+ * <p>
+ * Values are enrolled with a priority, and {@link #warmUp(Executor, Duration)} evaluates them from highest to lowest
+ * priority (in enrollment order for equal priorities). A caller that calls {@link LazyValue#get()} on a value while it
+ * is being warmed up waits for that evaluation rather than running the {@link java.util.function.Supplier} again.
+ */
+public class WarmUpRegistry {
+	private static final Comparator<Enrollment> ORDER = Comparator.<Enrollment>comparingInt(e -> -e.priority)
+			.thenComparingLong(e -> e.sequence);
+	
+	private final List<Enrollment> enrollments = new ArrayList<>();
+	private long sequence = 0;
+	
+	/**
+	 * Enroll a {@link LazyValue} to be warmed up
+	 * 
+	 * @param value
+	 * 		the value to warm up
+	 * @param priority
+	 * 		the priority of the value; values with higher priorities are warmed up first
+	 * @return
+	 * 		{@code value}
+	 */
+	public synchronized <T> LazyValue<T> enroll(LazyValue<T> value, int priority) {
+		enrollments.add(new Enrollment(Objects.requireNonNull(value), priority, sequence++));
+		
+		return value;
+	}
+	
+	/**
+	 * @return {@code true} if every enrolled value has been evaluated
+	 */
+	public synchronized boolean isWarm() {
+		return enrollments.stream().allMatch(e -> e.value.isEvaluated());
+	}
+	
+	/**
+	 * Evaluate the enrolled values one at a time, in priority order, on the given {@link Executor}
+	 * 
+	 * @param executor
+	 * 		the {@link Executor} to evaluate the values on
+	 * @param budget
+	 * 		how long to spend warming up; no value is started after the budget has run out
+	 * @return
+	 * 		a {@link CompletableFuture} that completes when every enrolled value has been evaluated. It completes
+	 * 		exceptionally with a {@link TimeoutException} if the budget ran out first, or with the first exception
+	 * 		thrown by a value's {@link java.util.function.Supplier}.
+	 */
+	public CompletableFuture<Void> warmUp(Executor executor, Duration budget) {
+		return warmUp(executor, budget, 1);
+	}
+	
+	/**
+	 * Evaluate the enrolled values in priority order on the given {@link Executor}, evaluating up to
+	 * {@code parallelism} values at a time
+	 * 
+	 * @param executor
+	 * 		the {@link Executor} to evaluate the values on
+	 * @param budget
+	 * 		how long to spend warming up; no value is started after the budget has run out
+	 * @param parallelism
+	 * 		the maximum number of values to evaluate at the same time
+	 * @return
+	 * 		a {@link CompletableFuture} that completes when every enrolled value has been evaluated. It completes
+	 * 		exceptionally with a {@link TimeoutException} if the budget ran out first, or with the first exception
+	 * 		thrown by a value's {@link java.util.function.Supplier}.
+	 */
+	public CompletableFuture<Void> warmUp(Executor executor, Duration budget, int parallelism) {
+		if(parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+		}
+		
+		Queue<Enrollment> queue;
+		synchronized(this) {
+			List<Enrollment> ordered = new ArrayList<>(enrollments);
+			ordered.sort(ORDER);
+			queue = new ConcurrentLinkedQueue<>(ordered);
+		}
+		
+		WarmUp warmUp = new WarmUp(queue, System.nanoTime() + budget.toNanos(), parallelism);
+		for(int i = 0; i < parallelism; i++) {
+			try {
+				executor.execute(warmUp::work);
+			} catch (RejectedExecutionException e) {
+				warmUp.fail(e);
+				warmUp.finishWorker();
+			}
+		}
+		
+		return warmUp.done;
+	}
+	
+	private static class Enrollment {
+		final LazyValue<?> value;
+		final int priority;
+		final long sequence;
+		
+		Enrollment(LazyValue<?> value, int priority, long sequence) {
+			this.value = value;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+	}
+	
+	private static class WarmUp {
+		final CompletableFuture<Void> done = new CompletableFuture<>();
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final Queue<Enrollment> queue;
+		final long deadline;
+		final AtomicInteger workers;
+		
+		WarmUp(Queue<Enrollment> queue, long deadline, int workers) {
+			this.queue = queue;
+			this.deadline = deadline;
+			this.workers = new AtomicInteger(workers);
+		}
+		
+		void work() {
+			Enrollment next;
+			while((next = queue.poll()) != null) {
+				if(System.nanoTime() - deadline > 0) {
+					fail(new TimeoutException("warm-up budget ran out with " + (queue.size() + 1) + " values left"));
+					break;
+				}
+				
+				try {
+					next.value.get();
+				} catch (Throwable t) {
+					fail(t);
+				}
+			}
+			
+			finishWorker();
+		}
+		
+		void fail(Throwable t) {
+			failure.compareAndSet(null, t);
+		}
+		
+		void finishWorker() {
+			if(workers.decrementAndGet() == 0) {
+				Throwable t = failure.get();
+				if(t == null) {
+					done.complete(null);
+				} else {
+					done.completeExceptionally(t);
+				}
+			}
+		}
+	}
+}
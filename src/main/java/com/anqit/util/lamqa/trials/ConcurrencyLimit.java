@@ -0,0 +1,231 @@
+package com.anqit.util.lamqa.trials;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.anqit.util.lamqa.function.ThrowingSupplier;
+import com.anqit.util.lamqa.trials.exception.TrialFailedException;
+
+/**
+ * An adaptive limit on how many calls to one function in a {@link TrialAndError} may run at the same time.
+ * <p>
+ * The limit follows an additive-increase/multiplicative-decrease (AIMD) rule: each call that succeeds within the
+ * latency threshold while the limit is at least half used raises the limit by one, and each call that is slower than
+ * the threshold (or, unless {@link #ignoringFailures()} is set, throws) multiplies the limit by the backoff ratio.
+ * When the limit is reached, the {@link TrialAndError} skips the function and moves on to the next one, or to its
+ * default, without calling it.
+ */
+public class ConcurrencyLimit {
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final LongAdder skipped = new LongAdder();
+	private int minLimit = 1;
+	private int maxLimit = 1000;
+	private long latencyThresholdNanos = TimeUnit.SECONDS.toNanos(1);
+	private double backoffRatio = 0.9;
+	private boolean backOffOnFailure = true;
+	private double estimatedLimit;
+	private volatile int limit;
+	
+	private ConcurrencyLimit(int initialLimit) {
+		this.estimatedLimit = initialLimit;
+		this.limit = initialLimit;
+	}
+	
+	/**
+	 * Create an AIMD {@link ConcurrencyLimit}
+	 * 
+	 * @param initialLimit
+	 * 		the number of concurrent calls to allow at first
+	 * @return
+	 * 		a new {@link ConcurrencyLimit} instance
+	 */
+	public static ConcurrencyLimit aimd(int initialLimit) {
+		if(initialLimit < 1) {
+			throw new IllegalArgumentException("a concurrency limit must be positive: " + initialLimit);
+		}
+		
+		return new ConcurrencyLimit(initialLimit);
+	}
+	
+	/**
+	 * Set the range the limit is kept within. The defaults are 1 and 1000.
+	 * 
+	 * @param minLimit
+	 * 		the lowest the limit can go
+	 * @param maxLimit
+	 * 		the highest the limit can go
+	 * @return
+	 * 		this {@link ConcurrencyLimit} instance
+	 */
+	public synchronized ConcurrencyLimit between(int minLimit, int maxLimit) {
+		if(minLimit < 1 || maxLimit < minLimit) {
+			throw new IllegalArgumentException("invalid concurrency limit range: " + minLimit + " to " + maxLimit);
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		
+		return adjust(estimatedLimit);
+	}
+	
+	/**
+	 * Set the latency above which a call counts as a sign of overload. The default is 1 second.
+	 * 
+	 * @param threshold
+	 * 		the latency threshold
+	 * @param unit
+	 * 		the unit of {@code threshold}
+	 * @return
+	 * 		this {@link ConcurrencyLimit} instance
+	 */
+	public synchronized ConcurrencyLimit latencyThreshold(long threshold, TimeUnit unit) {
+		this.latencyThresholdNanos = unit.toNanos(threshold);
+		
+		return this;
+	}
+	
+	/**
+	 * Set the ratio the limit is multiplied by on a sign of overload. The default is 0.9.
+	 * 
+	 * @param backoffRatio
+	 * 		a ratio between 0 and 1, exclusive
+	 * @return
+	 * 		this {@link ConcurrencyLimit} instance
+	 */
+	public synchronized ConcurrencyLimit backoff(double backoffRatio) {
+		if(!(backoffRatio > 0 && backoffRatio < 1)) {
+			throw new IllegalArgumentException("the backoff ratio must be between 0 and 1: " + backoffRatio);
+		}
+		this.backoffRatio = backoffRatio;
+		
+		return this;
+	}
+	
+	/**
+	 * Only back off for slow calls, not for calls that throw
+	 * 
+	 * @return
+	 * 		this {@link ConcurrencyLimit} instance
+	 */
+	public synchronized ConcurrencyLimit ignoringFailures() {
+		this.backOffOnFailure = false;
+		
+		return this;
+	}
+	
+	/**
+	 * @return the current limit on concurrent calls
+	 */
+	public int getLimit() {
+		return limit;
+	}
+	
+	/**
+	 * @return the number of calls currently running
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+	
+	/**
+	 * @return the number of calls skipped because the limit had been reached
+	 */
+	public long getSkipCount() {
+		return skipped.sum();
+	}
+	
+	/**
+	 * Reserve a place for a call, if the limit has not been reached. Each successful call must be followed by a
+	 * call to {@link #release(long, boolean)}.
+	 * 
+	 * @return {@code true} if the call may go ahead
+	 */
+	boolean tryAcquire() {
+		int current;
+		do {
+			current = inFlight.get();
+			if(current >= limit) {
+				skipped.increment();
+				return false;
+			}
+		} while(!inFlight.compareAndSet(current, current + 1));
+		
+		return true;
+	}
+	
+	/**
+	 * Give up a place reserved by {@link #tryAcquire()}, adapting the limit to how the call went
+	 * 
+	 * @param latencyNanos
+	 * 		how long the call took
+	 * @param failed
+	 * 		whether the call threw
+	 */
+	void release(long latencyNanos, boolean failed) {
+		int wasInFlight = inFlight.getAndDecrement();
+		
+		synchronized(this) {
+			if(latencyNanos > latencyThresholdNanos || (failed && backOffOnFailure)) {
+				adjust(estimatedLimit * backoffRatio);
+			} else if(!failed && wasInFlight * 2 >= limit) {
+				adjust(estimatedLimit + 1);
+			}
+		}
+	}
+	
+	/**
+	 * Give up a place reserved by {@link #tryAcquire()} without making the call, leaving the limit as it is
+	 */
+	void cancel() {
+		inFlight.decrementAndGet();
+	}
+	
+	/**
+	 * Call a function that has already been given a place by {@link #tryAcquire()}, then release that place
+	 * 
+	 * @param attempt
+	 * 		the function to call
+	 * @return
+	 * 		the result of the function
+	 * @throws Exception
+	 * 		if the function throws
+	 */
+	<R> R measure(ThrowingSupplier<R> attempt) throws Exception {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			R result = attempt.getThrows();
+			failed = false;
+			
+			return result;
+		} finally {
+			release(System.nanoTime() - start, failed);
+		}
+	}
+	
+	/**
+	 * Wrap a function so that it only runs if a place is available when it is called
+	 * 
+	 * @param attempt
+	 * 		the function to limit
+	 * @return
+	 * 		a function that throws a {@link TrialFailedException} instead of calling {@code attempt} if the limit
+	 * 		has been reached
+	 */
+	<R> ThrowingSupplier<R> limiting(ThrowingSupplier<R> attempt) {
+		return () -> {
+			if(!tryAcquire()) {
+				throw new TrialFailedException("concurrency limit of " + limit + " reached");
+			}
+			
+			return measure(attempt);
+		};
+	}
+	
+	private ConcurrencyLimit adjust(double newLimit) {
+		estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+		limit = (int) estimatedLimit;
+		
+		return this;
+	}
+}
@@ -0,0 +1,110 @@
+package com.anqit.util.lamqa.trials;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Volatile and atomic access to the {@code long}s of a memory-mapped file. The operations are the processor's own
+ * atomic instructions on the mapped memory, so they stay atomic across processes that map the same file.
+ * <p>
+ * This implementation uses {@code sun.misc.Unsafe}, which is looked up at runtime. On Java 9+ a version based on a
+ * {@code VarHandle} view of the buffer is used instead; both use the platform's native byte order, so processes on
+ * either can share a file.
+ */
+final class MappedLongs {
+	private static final MethodHandle GET_VOLATILE;
+	private static final MethodHandle PUT_VOLATILE;
+	private static final MethodHandle COMPARE_AND_SWAP;
+	private static final MethodHandle GET_AND_ADD;
+	private static final MethodHandle GET_LONG;
+	private static final long ADDRESS_OFFSET;
+	
+	static {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			Object unsafe = theUnsafe.get(null);
+			
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			GET_VOLATILE = lookup.findVirtual(unsafeClass, "getLongVolatile",
+					MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+			PUT_VOLATILE = lookup.findVirtual(unsafeClass, "putLongVolatile",
+					MethodType.methodType(void.class, Object.class, long.class, long.class)).bindTo(unsafe);
+			COMPARE_AND_SWAP = lookup.findVirtual(unsafeClass, "compareAndSwapLong",
+					MethodType.methodType(boolean.class, Object.class, long.class, long.class, long.class)).bindTo(unsafe);
+			GET_AND_ADD = lookup.findVirtual(unsafeClass, "getAndAddLong",
+					MethodType.methodType(long.class, Object.class, long.class, long.class)).bindTo(unsafe);
+			GET_LONG = lookup.findVirtual(unsafeClass, "getLong",
+					MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+			
+			MethodHandle objectFieldOffset = lookup.findVirtual(unsafeClass, "objectFieldOffset",
+					MethodType.methodType(long.class, Field.class)).bindTo(unsafe);
+			ADDRESS_OFFSET = (long) objectFieldOffset.invokeExact(Buffer.class.getDeclaredField("address"));
+		} catch (Throwable t) {
+			throw new ExceptionInInitializerError(t);
+		}
+	}
+	
+	// held so that the file stays mapped for as long as it is used
+	private final MappedByteBuffer buffer;
+	private final long address;
+	
+	MappedLongs(MappedByteBuffer buffer) {
+		this.buffer = buffer;
+		try {
+			this.address = (long) GET_LONG.invokeExact((Object) buffer, ADDRESS_OFFSET);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+	
+	/**
+	 * @param offset the byte offset of the {@code long}, which must be a multiple of 8
+	 */
+	long get(int offset) {
+		try {
+			return (long) GET_VOLATILE.invokeExact((Object) null, address + offset);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+	
+	void set(int offset, long value) {
+		try {
+			PUT_VOLATILE.invokeExact((Object) null, address + offset, value);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+	
+	boolean compareAndSet(int offset, long expected, long value) {
+		try {
+			return (boolean) COMPARE_AND_SWAP.invokeExact((Object) null, address + offset, expected, value);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+	
+	long getAndAdd(int offset, long delta) {
+		try {
+			return (long) GET_AND_ADD.invokeExact((Object) null, address + offset, delta);
+		} catch (Throwable t) {
+			throw rethrow(t);
+		}
+	}
+	
+	private static RuntimeException rethrow(Throwable t) {
+		if(t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		} else if(t instanceof Error) {
+			throw (Error) t;
+		}
+		
+		return new IllegalStateException(t);
+	}
+}
@@ -0,0 +1,270 @@
+package com.anqit.util.lamqa.trials;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+import com.anqit.util.lamqa.concurrent.TaskExecutors;
+import com.anqit.util.lamqa.function.ThrowingSupplier;
+import com.anqit.util.lamqa.trials.exception.ExceptionHandler;
+
+/**
+ * A policy for running all of the functions in a {@link TrialAndError} at once, rather than one after the other.
+ * <p>
+ * Every function is started on the {@link Executor}, and the trial completes as soon as {@link #of(int) the required
+ * number} of them have succeeded (and, if {@link #agreeing()} is used, agree with each other). The successful results
+ * are combined with the {@link #merging(Function) merge function}, and any functions still running are cancelled.
+ * If the quorum can no longer be reached, or is not reached {@link #within(long, TimeUnit) in time}, the trial's
+ * {@link TrialAndError#ifAllElseFails(Supplier) default} is returned instead.
+ * <p>
+ * Exception handlers are called on the thread that ran the failing function.
+ *
+ * @param <R>
+ * 		the return type of the trial
+ */
+public class Quorum<R> {
+	private final int required;
+	private BiPredicate<? super R, ? super R> agreement = (r1, r2) -> true;
+	private Function<List<R>, R> merge = results -> results.get(0);
+	private Executor executor = TaskExecutors.defaultExecutor();
+	private long timeoutNanos = Long.MAX_VALUE;
+	
+	private Quorum(int required) {
+		this.required = required;
+	}
+	
+	/**
+	 * Create a {@link Quorum} that completes with the first {@code required} successful results
+	 * 
+	 * @param required
+	 * 		the number of successful results needed
+	 * @return
+	 * 		a new {@link Quorum} instance
+	 * @throws IllegalArgumentException if {@code required} is less than 1
+	 */
+	public static <R> Quorum<R> of(int required) {
+		if(required < 1) {
+			throw new IllegalArgumentException("a quorum requires at least one result: " + required);
+		}
+		
+		return new Quorum<>(required);
+	}
+	
+	/**
+	 * Only count results that are equal to each other (determined by {@link Objects#equals(Object, Object)})
+	 * towards the quorum
+	 * 
+	 * @return
+	 * 		this {@link Quorum} instance
+	 */
+	public Quorum<R> agreeing() {
+		return agreeing(Objects::equals);
+	}
+	
+	/**
+	 * Only count results that agree with each other towards the quorum
+	 * 
+	 * @param agreement
+	 * 		determines whether two results agree
+	 * @return
+	 * 		this {@link Quorum} instance
+	 */
+	public Quorum<R> agreeing(BiPredicate<? super R, ? super R> agreement) {
+		this.agreement = Objects.requireNonNull(agreement);
+		
+		return this;
+	}
+	
+	/**
+	 * Set the function used to combine the results that make up the quorum into the result of the trial.
+	 * By default, the first result is used.
+	 * 
+	 * @param merge
+	 * 		a function of the results, in the order they arrived
+	 * @return
+	 * 		this {@link Quorum} instance
+	 */
+	public Quorum<R> merging(Function<List<R>, R> merge) {
+		this.merge = Objects.requireNonNull(merge);
+		
+		return this;
+	}
+	
+	/**
+	 * Set the {@link Executor} to run the functions on. By default, {@link TaskExecutors#defaultExecutor()} is used.
+	 * The executor must be able to run all of the functions at the same time.
+	 * 
+	 * @param executor
+	 * 		the {@link Executor} to run the functions on
+	 * @return
+	 * 		this {@link Quorum} instance
+	 */
+	public Quorum<R> on(Executor executor) {
+		this.executor = Objects.requireNonNull(executor);
+		
+		return this;
+	}
+	
+	/**
+	 * Set how long to wait for the quorum before giving up and returning the trial's default
+	 * 
+	 * @param timeout
+	 * 		the maximum time to wait
+	 * @param unit
+	 * 		the unit of {@code timeout}
+	 * @return
+	 * 		this {@link Quorum} instance
+	 */
+	public Quorum<R> within(long timeout, TimeUnit unit) {
+		this.timeoutNanos = unit.toNanos(timeout);
+		
+		return this;
+	}
+	
+	/**
+	 * @return
+	 * 		the number of agreeing successful results needed
+	 */
+	public int getRequired() {
+		return required;
+	}
+	
+	/**
+	 * Run the functions, calling {@code decided} with the index of the function whose result completed the quorum,
+	 * unless the default is used
+	 */
+	R run(List<ThrowingSupplier<R>> attempts, List<ExceptionHandler> handlers, Supplier<R> defaultSupplier, IntConsumer decided) {
+		Round round = new Round(attempts.size());
+		List<FutureTask<Void>> tasks = new ArrayList<>(attempts.size());
+		
+		List<R> quorum;
+		try {
+			// started tasks are cancelled by the finally block if a later one is rejected
+			for(int i = 0; i < attempts.size(); i++) {
+				int index = i;
+				ThrowingSupplier<R> attempt = attempts.get(i);
+				ExceptionHandler handler = handlers.get(i);
+				
+				FutureTask<Void> task = new FutureTask<>(() -> {
+					boolean succeeded = false;
+					try {
+						R result = attempt.getThrows();
+						succeeded = true;
+						round.succeeded(result, index);
+					} catch (Exception e) {
+						if(!round.isDone()) {
+							handler.handle(e);
+						}
+					} finally {
+						// also reached by an Error, or a handler that throws, which would otherwise leave the round waiting
+						if(!succeeded) {
+							round.failed();
+						}
+					}
+				}, null);
+				tasks.add(task);
+				executor.execute(task);
+			}
+			
+			quorum = round.await(timeoutNanos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			quorum = null;
+		} finally {
+			tasks.forEach(task -> task.cancel(true));
+		}
+
+		if(quorum == null) {
+			return defaultSupplier.get();
+		}
+		decided.accept(round.getDecidedBy());
+		
+		return merge.apply(quorum);
+	}
+	
+	/**
+	 * The state of one run of the functions: successful results, grouped by agreement, and the number of
+	 * functions still running
+	 */
+	private class Round {
+		private final List<List<R>> groups = new ArrayList<>();
+		private int pending;
+		private List<R> quorum;
+		// the index of the function whose result completed the quorum
+		private int decidedBy = -1;
+		private boolean done = false;
+		
+		Round(int pending) {
+			this.pending = pending;
+		}
+		
+		synchronized void succeeded(R result, int index) {
+			pending--;
+			if(done) {
+				return;
+			}
+			
+			List<R> group = groups.stream()
+					.filter(g -> agreement.test(g.get(0), result))
+					.findFirst()
+					.orElseGet(() -> {
+						List<R> newGroup = new ArrayList<>();
+						groups.add(newGroup);
+						return newGroup;
+					});
+			group.add(result);
+			
+			if(group.size() >= required) {
+				quorum = group;
+				decidedBy = index;
+				finish();
+			} else {
+				finishIfUnreachable();
+			}
+		}
+		
+		synchronized void failed() {
+			pending--;
+			finishIfUnreachable();
+		}
+		
+		synchronized boolean isDone() {
+			return done;
+		}
+		
+		synchronized int getDecidedBy() {
+			return decidedBy;
+		}
+		
+		synchronized List<R> await(long timeoutNanos) throws InterruptedException {
+			long deadline = System.nanoTime() + timeoutNanos;
+			long remaining = timeoutNanos;
+			while(!done && remaining > 0) {
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+				remaining = deadline - System.nanoTime();
+			}
+			done = true;
+			
+			return quorum;
+		}
+		
+		private void finishIfUnreachable() {
+			int largest = groups.stream().mapToInt(List::size).max().orElse(0);
+			if(!done && largest + pending < required) {
+				finish();
+			}
+		}
+		
+		private void finish() {
+			done = true;
+			notifyAll();
+		}
+	}
+}
@@ -1,19 +1,29 @@
 package com.anqit.util.lamqa.trials;
 
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.function.Supplier;
 
 import com.anqit.util.lamqa.function.Accepts;
 import com.anqit.util.lamqa.function.Returns;
 import com.anqit.util.lamqa.function.ThrowingBiFunction;
 import com.anqit.util.lamqa.function.ThrowingFunction;
+import com.anqit.util.lamqa.function.ThrowingQuadFunction;
 import com.anqit.util.lamqa.function.ThrowingSupplier;
+import com.anqit.util.lamqa.function.ThrowingTriFunction;
+import com.anqit.util.lamqa.function.ThrowingVarFunction;
 import com.anqit.util.lamqa.trials.exception.BiFunctionExceptionHandler;
 import com.anqit.util.lamqa.trials.exception.ExceptionHandler;
 import com.anqit.util.lamqa.trials.exception.FunctionExceptionHandler;
+import com.anqit.util.lamqa.trials.exception.QuadFunctionExceptionHandler;
+import com.anqit.util.lamqa.trials.exception.TriFunctionExceptionHandler;
 import com.anqit.util.lamqa.trials.exception.TrialFailedException;
+import com.anqit.util.lamqa.trials.exception.VarFunctionExceptionHandler;
 
 /**
  * A framework to support a trial-and-error strategy for obtaining a value. Instances of {@link TrialAndError} 
@@ -24,6 +34,10 @@ import com.anqit.util.lamqa.trials.exception.TrialFailedException;
  * 
  * If all of the functions in the function chain throw, then the default value is returned if specified by either
  * {@link #ifAllElseFails(Object)} or {@link #ifAllElseFails(Supplier)}, or null.
+ * <p>
+ * Once a chain is complete, each subclass can {@code compile()} it into a plain throwing function backed by a single
+ * {@link MethodHandle}. Keeping the compiled function in a {@code static final} field gives the JIT one constant,
+ * monomorphic call site through which it can inline the functions in the chain.
  *
  * @param <TE>
  * 		The type of TrialAndError, used to support fluency
@@ -37,11 +51,17 @@ import com.anqit.util.lamqa.trials.exception.TrialFailedException;
 public abstract class TrialAndError<TE extends TrialAndError<TE, F, E, R>, F extends Returns<R>, E extends Accepts<Exception>, R> {
 	private List<F> trials = new ArrayList<>();
 	private List<E> handlers = new ArrayList<>();
+	private List<ConcurrencyLimit> limits = new ArrayList<>();
+	private List<TrialHealth.Breaker> breakers = new ArrayList<>();
 	private Supplier<R> defaultSupplier = () -> null;
+	private Quorum<R> quorum;
+	private String name;
 			
 	private TrialAndError(F firstAttempt, E handler) {
 		trials.add(firstAttempt);
 		handlers.add(handler);
+		limits.add(null);
+		breakers.add(null);
 	}
 	
 	/**
@@ -133,6 +153,101 @@ public abstract class TrialAndError<TE extends TrialAndError<TE, F, E, R>, F ext
 		return new BiFunctionalTrialAndError<>(firstAttempt, handler);
 	}
 
+	/**
+	 * Creates a {@link TriFunctionalTrialAndError} instance by specifying the first three-arg function to try.
+	 * By not specifying an {@link ExceptionHandler}, any {@link Exception} thrown by this function will be ignored.
+	 * 
+	 * @param firstAttempt
+	 * 		the first function to try
+	 * @return
+	 * 		a new {@link TriFunctionalTrialAndError} instance
+	 */
+	public static <T, U, V, R> TriFunctionalTrialAndError<T, U, V, R> firstTry(ThrowingTriFunction<T, U, V, R> firstAttempt) {
+		return firstTry(firstAttempt, TriFunctionExceptionHandler.NOOP());
+	}
+	
+	/**
+	 * Creates a {@link TriFunctionalTrialAndError} instance by specifying the first three-arg function to try, and its
+	 * associated {@link ExceptionHandler}
+	 * 
+	 * @param firstAttempt
+	 * 		the first function to try
+	 * @param handler
+	 * 		the {@link ExceptionHandler} to call if this attempt throws an {@link Exception}
+	 * 		
+	 * @return
+	 * 		a new {@link TriFunctionalTrialAndError} instance
+	 */
+	public static <T, U, V, R> TriFunctionalTrialAndError<T, U, V, R> firstTry(ThrowingTriFunction<T, U, V, R> firstAttempt,
+			TriFunctionExceptionHandler<T, U, V> handler) {
+		return new TriFunctionalTrialAndError<>(firstAttempt, handler);
+	}
+
+	/**
+	 * Creates a {@link QuadFunctionalTrialAndError} instance by specifying the first four-arg function to try.
+	 * By not specifying an {@link ExceptionHandler}, any {@link Exception} thrown by this function will be ignored.
+	 * 
+	 * @param firstAttempt
+	 * 		the first function to try
+	 * @return
+	 * 		a new {@link QuadFunctionalTrialAndError} instance
+	 */
+	public static <T, U, V, W, R> QuadFunctionalTrialAndError<T, U, V, W, R> firstTry(
+			ThrowingQuadFunction<T, U, V, W, R> firstAttempt) {
+		return firstTry(firstAttempt, QuadFunctionExceptionHandler.NOOP());
+	}
+	
+	/**
+	 * Creates a {@link QuadFunctionalTrialAndError} instance by specifying the first four-arg function to try, and its
+	 * associated {@link ExceptionHandler}
+	 * 
+	 * @param firstAttempt
+	 * 		the first function to try
+	 * @param handler
+	 * 		the {@link ExceptionHandler} to call if this attempt throws an {@link Exception}
+	 * 		
+	 * @return
+	 * 		a new {@link QuadFunctionalTrialAndError} instance
+	 */
+	public static <T, U, V, W, R> QuadFunctionalTrialAndError<T, U, V, W, R> firstTry(
+			ThrowingQuadFunction<T, U, V, W, R> firstAttempt, QuadFunctionExceptionHandler<T, U, V, W> handler) {
+		return new QuadFunctionalTrialAndError<>(firstAttempt, handler);
+	}
+
+	/**
+	 * Creates a {@link VarFunctionalTrialAndError} instance by specifying the first function to try, which takes an
+	 * arbitrary number of args. By not specifying an {@link ExceptionHandler}, any {@link Exception} thrown by this
+	 * function will be ignored.
+	 * <p>
+	 * This is not an overload of {@code firstTry}, since a single-arg lambda would then be ambiguous between
+	 * {@link ThrowingFunction} and {@link ThrowingVarFunction}
+	 * 
+	 * @param firstAttempt
+	 * 		the first function to try
+	 * @return
+	 * 		a new {@link VarFunctionalTrialAndError} instance
+	 */
+	public static <R> VarFunctionalTrialAndError<R> firstTryVarArgs(ThrowingVarFunction<R> firstAttempt) {
+		return firstTryVarArgs(firstAttempt, VarFunctionExceptionHandler.NOOP);
+	}
+	
+	/**
+	 * Creates a {@link VarFunctionalTrialAndError} instance by specifying the first function to try, which takes an
+	 * arbitrary number of args, and its associated {@link ExceptionHandler}
+	 * 
+	 * @param firstAttempt
+	 * 		the first function to try
+	 * @param handler
+	 * 		the {@link ExceptionHandler} to call if this attempt throws an {@link Exception}
+	 * 		
+	 * @return
+	 * 		a new {@link VarFunctionalTrialAndError} instance
+	 */
+	public static <R> VarFunctionalTrialAndError<R> firstTryVarArgs(ThrowingVarFunction<R> firstAttempt,
+			VarFunctionExceptionHandler handler) {
+		return new VarFunctionalTrialAndError<>(firstAttempt, handler);
+	}
+
 	/**
 	 * Add a function to this {@link TrialAndError}'s function chain. By not specifying an {@link ExceptionHandler}, 
 	 * any {@link Exception} thrown by this function will be ignored.
@@ -160,7 +275,47 @@ public abstract class TrialAndError<TE extends TrialAndError<TE, F, E, R>, F ext
 	public TE orElseTry(F anotherAttempt, E handler) {
 		trials.add(anotherAttempt);
 		handlers.add(handler);
+		limits.add(null);
+		breakers.add(null);
+
+		return (TE) this;
+	}
+
+	/**
+	 * Limit how many calls to the most recently added function may run at the same time. While the limit is reached,
+	 * the function is skipped, without calling its {@link ExceptionHandler}, and the next function is tried. When the
+	 * trial runs {@link #inQuorum(Quorum) in a quorum}, a function over its limit fails with a
+	 * {@link TrialFailedException} instead.
+	 * 
+	 * @param limit
+	 * 		the {@link ConcurrencyLimit} for the function, or {@code null} for no limit
+	 * @return
+	 * 		this {@link TrialAndError} instance
+	 */
+	@SuppressWarnings("unchecked")
+	public TE limitedBy(ConcurrencyLimit limit) {
+		limits.set(limits.size() - 1, limit);
+		
+		return (TE) this;
+	}
 
+	/**
+	 * Guard the most recently added function with a circuit breaker shared with other processes through a
+	 * {@link TrialHealth} store. While the breaker is open, the function is skipped, without calling its
+	 * {@link ExceptionHandler}, and the next function is tried. When the trial runs {@link #inQuorum(Quorum) in a
+	 * quorum}, a function whose breaker is open fails with a {@link TrialFailedException} instead.
+	 * 
+	 * @param health
+	 * 		the store holding the breaker
+	 * @param key
+	 * 		the key of the breaker, such as the name of the backend the function calls
+	 * @return
+	 * 		this {@link TrialAndError} instance
+	 */
+	@SuppressWarnings("unchecked")
+	public TE guardedBy(TrialHealth health, String key) {
+		breakers.set(breakers.size() - 1, health.breaker(key));
+		
 		return (TE) this;
 	}
 
@@ -193,6 +348,46 @@ public abstract class TrialAndError<TE extends TrialAndError<TE, F, E, R>, F ext
 		return (TE) this;
 	}
 	
+	/**
+	 * Name this trial in the JDK Flight Recorder events it records, so its attempts can be told apart from other
+	 * trials'
+	 * 
+	 * @param name
+	 * 		the name of the trial
+	 * @return
+	 * 		this {@link TrialAndError} instance
+	 */
+	@SuppressWarnings("unchecked")
+	public TE named(String name) {
+		this.name = name;
+		
+		return (TE) this;
+	}
+	
+	/**
+	 * @return the name of this trial, or {@code null} if it has not been {@link #named(String) named}
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Run all of the functions in the function chain at once, completing with the results of the first ones to
+	 * satisfy the given {@link Quorum}, rather than trying them one after the other
+	 * 
+	 * @param quorum
+	 * 		the {@link Quorum} the results must satisfy, or {@code null} to try the functions in order again
+	 * 
+	 * @return
+	 * 		this {@link TrialAndError} instance	
+	 */
+	@SuppressWarnings("unchecked")
+	public TE inQuorum(Quorum<R> quorum) {
+		this.quorum = quorum;
+		
+		return (TE) this;
+	}
+	
 	protected abstract E getNoOpHandler();
 
 	/**
@@ -209,15 +404,207 @@ public abstract class TrialAndError<TE extends TrialAndError<TE, F, E, R>, F ext
 	}
 
 	protected R runTrial(Function<F, ThrowingSupplier<R>> toTrial, Function<E, ExceptionHandler> toHandler) {
+		return runTrial((f, trial, handler) -> trial.apply(f).getThrows(), (h, e, trial, handler) -> handler.apply(h).handle(e),
+				toTrial, toHandler);
+	}
+	
+	/**
+	 * Run the trial, passing the arguments through to each call rather than capturing them. With non-capturing
+	 * invokers, a call that is answered by a function without a concurrency limit allocates nothing.
+	 * 
+	 * @param invoker
+	 * 		calls a function in the chain on the arguments
+	 * @param handlerInvoker
+	 * 		calls an exception handler on the exception and the arguments
+	 * @param a
+	 * 		the first argument
+	 * @param b
+	 * 		the second argument
+	 * @return
+	 * 		the result obtained by the trial
+	 */
+	protected <A, B> R runTrial(Invoker<F, A, B, R> invoker, HandlerInvoker<E, A, B> handlerInvoker, A a, B b) {
+		return runTrial(invoker, handlerInvoker, a, b, null, null);
+	}
+	
+	/**
+	 * Run the trial, passing up to four arguments through to each call rather than capturing them
+	 * 
+	 * @param invoker
+	 * 		calls a function in the chain on the arguments
+	 * @param handlerInvoker
+	 * 		calls an exception handler on the exception and the arguments
+	 * @param a
+	 * 		the first argument
+	 * @param b
+	 * 		the second argument
+	 * @param c
+	 * 		the third argument
+	 * @param d
+	 * 		the fourth argument
+	 * @return
+	 * 		the result obtained by the trial
+	 */
+	protected <A, B, C, D> R runTrial(QuadInvoker<F, A, B, C, D, R> invoker, QuadHandlerInvoker<E, A, B, C, D> handlerInvoker,
+			A a, B b, C c, D d) {
+		Object chainEvent = TrialEvents.chainStarted();
+		int answeredBy = -1;
+		boolean failed = true;
+		try {
+			if(quorum != null) {
+				int[] decidedBy = { -1 };
+				R result = runQuorum(invoker, handlerInvoker, a, b, c, d, i -> decidedBy[0] = i);
+				answeredBy = decidedBy[0];
+				failed = false;
+				
+				return result;
+			}
+			
+			for(int i = 0; i < trials.size(); i++) {
+				// the limit is checked first, as a breaker that allows the call may have made it the probe
+				ConcurrencyLimit limit = limits.get(i);
+				if(limit != null && !limit.tryAcquire()) {
+					continue;
+				}
+				
+				TrialHealth.Breaker breaker = breakers.get(i);
+				if(breaker != null && !breaker.allows()) {
+					if(limit != null) {
+						limit.cancel();
+					}
+					continue;
+				}
+				
+				F trial = trials.get(i);
+				Object attemptEvent = TrialEvents.attemptStarted();
+				try {
+					R result = limit == null ? invoker.invoke(trial, a, b, c, d) : limit.measure(() -> invoker.invoke(trial, a, b, c, d));
+					if(breaker != null) {
+						breaker.succeeded();
+					}
+					TrialEvents.attemptFinished(attemptEvent, name, i, null);
+					answeredBy = i;
+					failed = false;
+					
+					return result;
+				} catch (Exception e) {
+					if(breaker != null) {
+						breaker.failed();
+					}
+					TrialEvents.attemptFinished(attemptEvent, name, i, e);
+					handlerInvoker.invoke(handlers.get(i), e, a, b, c, d);
+				}
+			}
+			
+			R result = defaultSupplier.get();
+			failed = false;
+			
+			return result;
+		} finally {
+			// also recorded when an exception handler or the default throws
+			TrialEvents.chainFinished(chainEvent, name, answeredBy, failed);
+		}
+	}
+	
+	private <A, B, C, D> R runQuorum(QuadInvoker<F, A, B, C, D, R> invoker, QuadHandlerInvoker<E, A, B, C, D> handlerInvoker,
+			A a, B b, C c, D d, IntConsumer decided) {
+		List<ThrowingSupplier<R>> attempts = new ArrayList<>(trials.size());
+		List<ExceptionHandler> attemptHandlers = new ArrayList<>(handlers.size());
 		for(int i = 0; i < trials.size(); i++) {
-			try {
-				return toTrial.apply(trials.get(i)).getThrows();
-			} catch (Exception e) {
-				toHandler.apply(handlers.get(i)).handle(e);
+			int index = i;
+			F trial = trials.get(i);
+			E handler = handlers.get(i);
+			ThrowingSupplier<R> attempt = () -> {
+				Object attemptEvent = TrialEvents.attemptStarted();
+				try {
+					R result = invoker.invoke(trial, a, b, c, d);
+					TrialEvents.attemptFinished(attemptEvent, name, index, null);
+					
+					return result;
+				} catch (Exception e) {
+					TrialEvents.attemptFinished(attemptEvent, name, index, e);
+					throw e;
+				}
+			};
+			if(breakers.get(i) != null) {
+				attempt = breakers.get(i).guarding(attempt);
 			}
+			if(limits.get(i) != null) {
+				attempt = limits.get(i).limiting(attempt);
+			}
+			attempts.add(attempt);
+			attemptHandlers.add(e -> handlerInvoker.invoke(handler, e, a, b, c, d));
+		}
+		
+		return quorum.run(attempts, attemptHandlers, defaultSupplier, decided);
+	}
+	
+	/**
+	 * Calls a function in the chain on up to two arguments
+	 */
+	@FunctionalInterface
+	protected interface Invoker<F, A, B, R> extends QuadInvoker<F, A, B, Object, Object, R> {
+		R invoke(F function, A a, B b) throws Exception;
+		
+		@Override
+		default R invoke(F function, A a, B b, Object c, Object d) throws Exception {
+			return invoke(function, a, b);
+		}
+	}
+	
+	/**
+	 * Calls an exception handler on an exception and up to two arguments
+	 */
+	@FunctionalInterface
+	protected interface HandlerInvoker<E, A, B> extends QuadHandlerInvoker<E, A, B, Object, Object> {
+		void invoke(E handler, Exception e, A a, B b);
+		
+		@Override
+		default void invoke(E handler, Exception e, A a, B b, Object c, Object d) {
+			invoke(handler, e, a, b);
+		}
+	}
+	
+	/**
+	 * Calls a function in the chain on up to four arguments
+	 */
+	@FunctionalInterface
+	protected interface QuadInvoker<F, A, B, C, D, R> {
+		R invoke(F function, A a, B b, C c, D d) throws Exception;
+	}
+	
+	/**
+	 * Calls an exception handler on an exception and up to four arguments
+	 */
+	@FunctionalInterface
+	protected interface QuadHandlerInvoker<E, A, B, C, D> {
+		void invoke(E handler, Exception e, A a, B b, C c, D d);
+	}
+	
+	/**
+	 * Compile this trial's function chain, as it is now, into a single {@link MethodHandle}. Functions added or
+	 * defaults set afterwards are not reflected in the compiled handle.
+	 * 
+	 * @param trialInvoker
+	 * 		a handle of type {@code (F, A...)Object} that calls a function in the chain on the arguments {@code A...}
+	 * @param handlerInvoker
+	 * 		a handle of type {@code (E, Exception, A...)void} that calls an exception handler on the arguments {@code A...}
+	 * @return
+	 * 		a handle of type {@code (A...)Object} that runs the function chain
+	 * @throws IllegalStateException if this trial runs {@link #inQuorum(Quorum) in a quorum}, or has
+	 * 		{@link #limitedBy(ConcurrencyLimit) concurrency limits} or {@link #guardedBy(TrialHealth, String) circuit breakers}
+	 */
+	protected MethodHandle compileTrial(MethodHandle trialInvoker, MethodHandle handlerInvoker) {
+		if(quorum != null) {
+			throw new IllegalStateException("only trials whose functions are tried in order can be compiled");
+		} else if(limits.stream().anyMatch(Objects::nonNull)) {
+			throw new IllegalStateException("trials with concurrency limits cannot be compiled");
+		} else if(breakers.stream().anyMatch(Objects::nonNull)) {
+			throw new IllegalStateException("trials guarded by circuit breakers cannot be compiled");
 		}
 		
-		return defaultSupplier.get();
+		return TrialCompiler.compile(new ArrayList<>(trials), new ArrayList<>(handlers), defaultSupplier, 
+				trialInvoker, handlerInvoker);
 	}
 	
 	/**
@@ -238,7 +625,27 @@ public abstract class TrialAndError<TE extends TrialAndError<TE, F, E, R>, F ext
 		 * 		the result obtained by the trial
 		 */
 		public R run() {
-			return runTrial(Function.identity(), Function.identity());
+			return runTrial((f, a, b) -> f.getThrows(), (h, e, a, b) -> h.handle(e), null, null);
+		}
+
+		/**
+		 * Compile the function chain into a single {@link ThrowingSupplier}, backed by a {@link MethodHandle} tree. The chain is
+		 * captured as it is now; functions added afterwards are not included. Exceptions thrown by the default
+		 * {@link Supplier} or by an exception handler propagate to the caller.
+		 * 
+		 * @return
+		 * 		a function that runs this trial
+		 */
+		@SuppressWarnings("unchecked")
+		public ThrowingSupplier<R> compile() {
+			MethodHandle trial = compileTrial(TrialCompiler.SUPPLIER, TrialCompiler.HANDLER);
+			return () -> {
+				try {
+					return (R) trial.invokeExact();
+				} catch (Throwable t) {
+					throw TrialCompiler.rethrow(t);
+				}
+			};
 		}
 
 		@Override
@@ -268,7 +675,27 @@ public abstract class TrialAndError<TE extends TrialAndError<TE, F, E, R>, F ext
 		 * 		the result obtained by the trial
 		 */
 		public R on(T t) {
-			return runTrial(f -> () -> f.applyThrows(t), h -> (e) -> h.handle(e, t));
+			return runTrial((f, arg, b) -> f.applyThrows(arg), (h, e, arg, b) -> h.handle(e, arg), t, null);
+		}
+
+		/**
+		 * Compile the function chain into a single {@link ThrowingFunction}, backed by a {@link MethodHandle} tree. The chain is
+		 * captured as it is now; functions added afterwards are not included. Exceptions thrown by the default
+		 * {@link Supplier} or by an exception handler propagate to the caller.
+		 * 
+		 * @return
+		 * 		a function that runs this trial
+		 */
+		@SuppressWarnings("unchecked")
+		public ThrowingFunction<T, R> compile() {
+			MethodHandle trial = compileTrial(TrialCompiler.FUNCTION, TrialCompiler.FUNCTION_HANDLER);
+			return t -> {
+				try {
+					return (R) trial.invokeExact((Object) t);
+				} catch (Throwable th) {
+					throw TrialCompiler.rethrow(th);
+				}
+			};
 		}
 
 		@Override
@@ -305,7 +732,27 @@ public abstract class TrialAndError<TE extends TrialAndError<TE, F, E, R>, F ext
 		 * 		the result obtained by the trial
 		 */
 		public R on(T t, U u) {
-			return runTrial(f -> () -> f.applyThrows(t, u), h -> (e) -> h.handle(e, t, u));
+			return runTrial(ThrowingBiFunction::applyThrows, BiFunctionExceptionHandler::handle, t, u);
+		}
+
+		/**
+		 * Compile the function chain into a single {@link ThrowingBiFunction}, backed by a {@link MethodHandle} tree. The chain is
+		 * captured as it is now; functions added afterwards are not included. Exceptions thrown by the default
+		 * {@link Supplier} or by an exception handler propagate to the caller.
+		 * 
+		 * @return
+		 * 		a function that runs this trial
+		 */
+		@SuppressWarnings("unchecked")
+		public ThrowingBiFunction<T, U, R> compile() {
+			MethodHandle trial = compileTrial(TrialCompiler.BI_FUNCTION, TrialCompiler.BI_FUNCTION_HANDLER);
+			return (t, u) -> {
+				try {
+					return (R) trial.invokeExact((Object) t, (Object) u);
+				} catch (Throwable th) {
+					throw TrialCompiler.rethrow(th);
+				}
+			};
 		}
 
 		@Override
@@ -313,4 +760,299 @@ public abstract class TrialAndError<TE extends TrialAndError<TE, F, E, R>, F ext
 			return BiFunctionExceptionHandler.NOOP();
 		}
 	}
+	
+	/**
+	 * A {@link TrialAndError} whose functions take three args
+	 * 
+	 * @param <T> 
+	 *		the type of first parameter of the functions
+	 * @param <U> 
+	 *		the type of second parameter of the functions 
+	 * @param <V> 
+	 *		the type of third parameter of the functions 
+	 * @param <R>
+	 * 		the return type of the trial
+	 */
+	public static class TriFunctionalTrialAndError<T, U, V, R> extends TrialAndError<TriFunctionalTrialAndError<T, U, V, R>, ThrowingTriFunction<T, U, V, R>, TriFunctionExceptionHandler<T, U, V>, R> {
+		private TriFunctionalTrialAndError(ThrowingTriFunction<T, U, V, R> firstAttempt, TriFunctionExceptionHandler<T, U, V> handler) {
+			super(firstAttempt, handler);
+		}
+
+		/**
+		 * Execute the trial on the given inputs
+		 * 
+		 * @param t 
+		 * 		the value to pass as the first argument to the functions in the trial
+		 * @param u  
+		 * 		the value to pass as the second argument to the functions in the trial
+		 * @param v  
+		 * 		the value to pass as the third argument to the functions in the trial
+		 * 
+		 * @return
+		 * 		the result obtained by the trial
+		 */
+		public R on(T t, U u, V v) {
+			return runTrial((f, a, b, c, d) -> f.applyThrows(a, b, c), (h, e, a, b, c, d) -> h.handle(e, a, b, c), t, u, v, null);
+		}
+
+		/**
+		 * Compile the function chain into a single {@link ThrowingTriFunction}, backed by a {@link MethodHandle} tree. The chain is
+		 * captured as it is now; functions added afterwards are not included. Exceptions thrown by the default
+		 * {@link Supplier} or by an exception handler propagate to the caller.
+		 * 
+		 * @return
+		 * 		a function that runs this trial
+		 */
+		@SuppressWarnings("unchecked")
+		public ThrowingTriFunction<T, U, V, R> compile() {
+			MethodHandle trial = compileTrial(TrialCompiler.TRI_FUNCTION, TrialCompiler.TRI_FUNCTION_HANDLER);
+			return (t, u, v) -> {
+				try {
+					return (R) trial.invokeExact((Object) t, (Object) u, (Object) v);
+				} catch (Throwable th) {
+					throw TrialCompiler.rethrow(th);
+				}
+			};
+		}
+
+		@Override
+		protected TriFunctionExceptionHandler<T, U, V> getNoOpHandler() {
+			return TriFunctionExceptionHandler.NOOP();
+		}
+	}
+	
+	/**
+	 * A {@link TrialAndError} whose functions take four args
+	 * 
+	 * @param <T> 
+	 *		the type of first parameter of the functions
+	 * @param <U> 
+	 *		the type of second parameter of the functions 
+	 * @param <V> 
+	 *		the type of third parameter of the functions 
+	 * @param <W> 
+	 *		the type of fourth parameter of the functions 
+	 * @param <R>
+	 * 		the return type of the trial
+	 */
+	public static class QuadFunctionalTrialAndError<T, U, V, W, R> extends TrialAndError<QuadFunctionalTrialAndError<T, U, V, W, R>, ThrowingQuadFunction<T, U, V, W, R>, QuadFunctionExceptionHandler<T, U, V, W>, R> {
+		private QuadFunctionalTrialAndError(ThrowingQuadFunction<T, U, V, W, R> firstAttempt, QuadFunctionExceptionHandler<T, U, V, W> handler) {
+			super(firstAttempt, handler);
+		}
+
+		/**
+		 * Execute the trial on the given inputs
+		 * 
+		 * @param t 
+		 * 		the value to pass as the first argument to the functions in the trial
+		 * @param u  
+		 * 		the value to pass as the second argument to the functions in the trial
+		 * @param v  
+		 * 		the value to pass as the third argument to the functions in the trial
+		 * @param w  
+		 * 		the value to pass as the fourth argument to the functions in the trial
+		 * 
+		 * @return
+		 * 		the result obtained by the trial
+		 */
+		public R on(T t, U u, V v, W w) {
+			return runTrial(ThrowingQuadFunction::applyThrows, QuadFunctionExceptionHandler::handle, t, u, v, w);
+		}
+
+		/**
+		 * Compile the function chain into a single {@link ThrowingQuadFunction}, backed by a {@link MethodHandle} tree. The chain is
+		 * captured as it is now; functions added afterwards are not included. Exceptions thrown by the default
+		 * {@link Supplier} or by an exception handler propagate to the caller.
+		 * 
+		 * @return
+		 * 		a function that runs this trial
+		 */
+		@SuppressWarnings("unchecked")
+		public ThrowingQuadFunction<T, U, V, W, R> compile() {
+			MethodHandle trial = compileTrial(TrialCompiler.QUAD_FUNCTION, TrialCompiler.QUAD_FUNCTION_HANDLER);
+			return (t, u, v, w) -> {
+				try {
+					return (R) trial.invokeExact((Object) t, (Object) u, (Object) v, (Object) w);
+				} catch (Throwable th) {
+					throw TrialCompiler.rethrow(th);
+				}
+			};
+		}
+
+		@Override
+		protected QuadFunctionExceptionHandler<T, U, V, W> getNoOpHandler() {
+			return QuadFunctionExceptionHandler.NOOP();
+		}
+	}
+	
+	/**
+	 * A {@link TrialAndError} whose functions take an arbitrary number of args.
+	 * <p>
+	 * The argument array given to {@link #on(Object...)} is passed as-is to every function in the chain, so a caller
+	 * that reuses its own array does not allocate per call. Alternatively, {@link #arguments(int)} hands out a
+	 * per-thread argument buffer that is reused across calls.
+	 * 
+	 * @param <R>
+	 * 		the return type of the trial
+	 */
+	public static class VarFunctionalTrialAndError<R> extends TrialAndError<VarFunctionalTrialAndError<R>, ThrowingVarFunction<R>, VarFunctionExceptionHandler, R> {
+		// buffers for more arguments than this are not kept for reuse
+		private static final int MAX_CACHED_COUNT = 16;
+		// the calling thread's free argument buffers by count, shared by all trials; a buffer is taken out while it is
+		// handed out, so that one that is never run does not keep its trial alive
+		private static final ThreadLocal<Arguments<?>[]> BUFFERS = ThreadLocal.withInitial(() -> new Arguments<?>[MAX_CACHED_COUNT + 1]);
+
+		private VarFunctionalTrialAndError(ThrowingVarFunction<R> firstAttempt, VarFunctionExceptionHandler handler) {
+			super(firstAttempt, handler);
+		}
+
+		/**
+		 * Execute the trial on the given inputs. The array itself is passed to the functions in the trial,
+		 * so the caller may reuse it once this method returns
+		 * 
+		 * @param args 
+		 * 		the values to pass to the functions in the trial
+		 * @return
+		 * 		the result obtained by the trial
+		 */
+		public R on(Object... args) {
+			return runTrial((f, arguments, b) -> f.apply(arguments), (h, e, arguments, b) -> h.handle(e, arguments), args, null);
+		}
+
+		/**
+		 * Compile the function chain into a single {@link ThrowingVarFunction}, backed by a {@link MethodHandle} tree. The chain is
+		 * captured as it is now; functions added afterwards are not included. Exceptions thrown by the default
+		 * {@link Supplier} or by an exception handler propagate to the caller.
+		 * 
+		 * @return
+		 * 		a function that runs this trial
+		 */
+		public ThrowingVarFunction<R> compile() {
+			MethodHandle trial = compileTrial(TrialCompiler.VAR_FUNCTION, TrialCompiler.VAR_FUNCTION_HANDLER);
+			return new ThrowingVarFunction<R>() {
+				@Override
+				@SafeVarargs
+				@SuppressWarnings("unchecked")
+				public final <A> R apply(A... objects) throws Exception {
+					try {
+						return (R) trial.invokeExact((Object[]) objects);
+					} catch (Throwable th) {
+						throw TrialCompiler.rethrow(th);
+					}
+				}
+			};
+		}
+		
+		/**
+		 * Get the calling thread's reusable argument buffer holding {@code count} arguments. Fill it with
+		 * {@link Arguments#with(Object)} and execute the trial with {@link Arguments#run()}, which clears
+		 * the buffer and hands it back for the next call, whether the trial succeeds or not; the buffer must not be
+		 * used after that. If the buffer is already in use (e.g. by a function in this chain calling back into it,
+		 * or by a buffer of another trial that has not been run yet), a fresh one is returned instead. Buffers for
+		 * more than 16 arguments are not reused.
+		 * 
+		 * @param count
+		 * 		the number of arguments the functions in the trial will be passed
+		 * @return
+		 * 		an empty argument buffer
+		 */
+		@SuppressWarnings("unchecked")
+		public Arguments<R> arguments(int count) {
+			if(count < 0) {
+				throw new IllegalArgumentException("argument count must not be negative: " + count);
+			}
+			
+			Arguments<R> buffer = null;
+			if(count <= MAX_CACHED_COUNT) {
+				Arguments<?>[] free = BUFFERS.get();
+				buffer = (Arguments<R>) free[count];
+				free[count] = null;
+			}
+			
+			return (buffer == null ? new Arguments<R>(count) : buffer).bind(this);
+		}
+
+		@Override
+		protected VarFunctionExceptionHandler getNoOpHandler() {
+			return VarFunctionExceptionHandler.NOOP;
+		}
+		
+		/**
+		 * A reusable, single-thread buffer of arguments for a {@link VarFunctionalTrialAndError}
+		 * 
+		 * @param <R>
+		 * 		the return type of the trial
+		 */
+		public static class Arguments<R> {
+			private final Object[] args;
+			private int size = 0;
+			// the trial the buffer is handed out for, or null once it has been run
+			private VarFunctionalTrialAndError<R> trial;
+			
+			private Arguments(int count) {
+				this.args = new Object[count];
+			}
+			
+			private Arguments<R> bind(VarFunctionalTrialAndError<R> trial) {
+				this.trial = trial;
+				
+				return this;
+			}
+			
+			/**
+			 * Set the next argument
+			 * 
+			 * @param arg
+			 * 		the value of the next argument
+			 * @return
+			 * 		this buffer
+			 * @throws IllegalStateException if the buffer is already full
+			 */
+			public Arguments<R> with(Object arg) {
+				if(size == args.length) {
+					throw new IllegalStateException("all " + args.length + " arguments have already been set");
+				}
+				args[size++] = arg;
+				
+				return this;
+			}
+			
+			/**
+			 * Execute the trial on the buffered arguments, then clear the buffer and hand it back for reuse
+			 * 
+			 * @return
+			 * 		the result obtained by the trial
+			 * @throws IllegalStateException if not all arguments have been set, or if the buffer has already been run
+			 */
+			public R run() {
+				VarFunctionalTrialAndError<R> trial = this.trial;
+				if(trial == null) {
+					throw new IllegalStateException("the buffer has already been run");
+				}
+				
+				try {
+					if(size != args.length) {
+						throw new IllegalStateException("expected " + args.length + " arguments, but " + size + " were set");
+					}
+					
+					return trial.on(args);
+				} finally {
+					Arrays.fill(args, 0, size, null);
+					size = 0;
+					this.trial = null;
+					release();
+				}
+			}
+			
+			private void release() {
+				if(args.length <= MAX_CACHED_COUNT) {
+					Arguments<?>[] free = BUFFERS.get();
+					// a buffer handed out while this one was in use may have been given back already
+					if(free[args.length] == null) {
+						free[args.length] = this;
+					}
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,316 @@
+package com.anqit.util.lamqa.trials;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.anqit.util.lamqa.concurrent.TaskExecutors;
+import com.anqit.util.lamqa.function.ThrowingFunction;
+import com.anqit.util.lamqa.trials.TrialAndError.FunctionalTrialAndError;
+import com.anqit.util.lamqa.trials.exception.FunctionExceptionHandler;
+
+/**
+ * A front end for a {@link FunctionalTrialAndError} that coalesces calls made at about the same time into a single
+ * call to a bulk trial, in the style of a DataLoader.
+ * <p>
+ * The first key {@link #load(Object) loaded} starts a batch. Keys loaded {@link #within(long, TimeUnit) within the
+ * batch window} join it, until the window ends or the batch reaches {@link #maxBatchSize(int) its maximum size}, and
+ * then the bulk trial is called once with the distinct keys of the batch. A key loaded more than once in a batch
+ * shares a single result. Each key the bulk trial answers (a key present in the returned {@link Map}, even with a
+ * {@code null} value) completes with that value; each key it misses goes through the rest of the chain on its own.
+ * If the bulk trial throws, the exception is passed to the {@link #handlingFailuresWith(FunctionExceptionHandler)
+ * failure handler} and every key in the batch goes through the rest of the chain.
+ * <p>
+ * Batches, and the rest of the chain, run on the {@link #on(Executor) executor}. A key whose rest of the chain the
+ * executor rejects runs it on the thread that sent the batch instead. If the failure handler throws, or the batch
+ * fails with an {@link Error}, the keys it has not completed yet complete exceptionally with that throwable. An
+ * {@link Error} is also rethrown on the executor's thread.
+ *
+ * @param <T>
+ * 		the type of the keys
+ * @param <R>
+ * 		the return type of the trial
+ */
+public class TrialBatcher<T, R> {
+	private final ThrowingFunction<? super Set<T>, ? extends Map<? extends T, ? extends R>> bulkTrial;
+	private final ThrowingFunction<? super T, ? extends R> rest;
+	private long windowNanos = TimeUnit.MILLISECONDS.toNanos(1);
+	private int maxBatchSize = 100;
+	private Executor executor = TaskExecutors.defaultExecutor();
+	private FunctionExceptionHandler<? super Set<T>> failureHandler = FunctionExceptionHandler.NOOP();
+	
+	// the batch that new keys join, or null if there is none
+	private Batch current;
+	
+	private TrialBatcher(ThrowingFunction<? super Set<T>, ? extends Map<? extends T, ? extends R>> bulkTrial,
+			ThrowingFunction<? super T, ? extends R> rest) {
+		this.bulkTrial = Objects.requireNonNull(bulkTrial);
+		this.rest = Objects.requireNonNull(rest);
+	}
+	
+	/**
+	 * Create a {@link TrialBatcher} that tries a bulk trial first, and a {@link FunctionalTrialAndError} for the keys
+	 * it misses
+	 *
+	 * @param bulkTrial
+	 * 		the function that loads a batch of keys at once, returning the results it found by key
+	 * @param rest
+	 * 		the trial to run on each key the bulk trial misses
+	 * @return
+	 * 		a new {@link TrialBatcher} instance
+	 */
+	public static <T, R> TrialBatcher<T, R> of(
+			ThrowingFunction<? super Set<T>, ? extends Map<? extends T, ? extends R>> bulkTrial,
+			FunctionalTrialAndError<T, R> rest) {
+		return new TrialBatcher<>(bulkTrial, rest::on);
+	}
+	
+	/**
+	 * Create a {@link TrialBatcher} that tries a bulk trial first, and a function, such as a
+	 * {@link FunctionalTrialAndError#compile() compiled trial}, for the keys it misses
+	 *
+	 * @param bulkTrial
+	 * 		the function that loads a batch of keys at once, returning the results it found by key
+	 * @param rest
+	 * 		the function to apply to each key the bulk trial misses
+	 * @return
+	 * 		a new {@link TrialBatcher} instance
+	 */
+	public static <T, R> TrialBatcher<T, R> of(
+			ThrowingFunction<? super Set<T>, ? extends Map<? extends T, ? extends R>> bulkTrial,
+			ThrowingFunction<? super T, ? extends R> rest) {
+		return new TrialBatcher<>(bulkTrial, rest);
+	}
+	
+	/**
+	 * Set how long a batch waits for more keys after its first one. The default is 1 millisecond.
+	 *
+	 * @param window
+	 * 		the length of the window
+	 * @param unit
+	 * 		the unit of {@code window}
+	 * @return
+	 * 		this {@link TrialBatcher} instance
+	 */
+	public TrialBatcher<T, R> within(long window, TimeUnit unit) {
+		if(window < 0) {
+			throw new IllegalArgumentException("the batch window cannot be negative: " + window);
+		}
+		this.windowNanos = unit.toNanos(window);
+		
+		return this;
+	}
+	
+	/**
+	 * Set the number of distinct keys at which a batch is sent without waiting for the rest of its window. The
+	 * default is 100.
+	 *
+	 * @param maxBatchSize
+	 * 		the maximum number of distinct keys in a batch
+	 * @return
+	 * 		this {@link TrialBatcher} instance
+	 */
+	public TrialBatcher<T, R> maxBatchSize(int maxBatchSize) {
+		if(maxBatchSize < 1) {
+			throw new IllegalArgumentException("the maximum batch size must be positive: " + maxBatchSize);
+		}
+		this.maxBatchSize = maxBatchSize;
+		
+		return this;
+	}
+	
+	/**
+	 * Set the {@link Executor} to run batches and the rest of the chain on. By default,
+	 * {@link TaskExecutors#defaultExecutor()} is used.
+	 *
+	 * @param executor
+	 * 		the {@link Executor} to run on
+	 * @return
+	 * 		this {@link TrialBatcher} instance
+	 */
+	public TrialBatcher<T, R> on(Executor executor) {
+		this.executor = Objects.requireNonNull(executor);
+		
+		return this;
+	}
+	
+	/**
+	 * Pass exceptions thrown by the bulk trial to a handler, along with the keys of the batch
+	 *
+	 * @param failureHandler
+	 * 		the handler to call with the exception and the keys
+	 * @return
+	 * 		this {@link TrialBatcher} instance
+	 */
+	public TrialBatcher<T, R> handlingFailuresWith(FunctionExceptionHandler<? super Set<T>> failureHandler) {
+		this.failureHandler = Objects.requireNonNull(failureHandler);
+		
+		return this;
+	}
+	
+	/**
+	 * Load a key, waiting for the result
+	 *
+	 * @param key
+	 * 		the key to load
+	 * @return
+	 * 		the result obtained by the bulk trial, or by the rest of the chain
+	 */
+	public R load(T key) {
+		try {
+			return loadAsync(key).join();
+		} catch(CompletionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if(cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+	
+	/**
+	 * Load a key, without waiting for the result
+	 *
+	 * @param key
+	 * 		the key to load
+	 * @return
+	 * 		a {@link CompletableFuture} completed with the result obtained by the bulk trial, or by the rest of the
+	 * 		chain, or completed exceptionally with the exception thrown by the rest of the chain
+	 */
+	public CompletableFuture<R> loadAsync(T key) {
+		Batch batch;
+		CompletableFuture<R> result;
+		boolean started;
+		synchronized(this) {
+			started = current == null;
+			if(started) {
+				current = new Batch();
+			}
+			batch = current;
+			
+			result = batch.results.get(key);
+			if(result == null) {
+				result = new CompletableFuture<>();
+				batch.results.put(key, result);
+				if(batch.results.size() >= maxBatchSize) {
+					close(batch);
+				}
+			}
+		}
+		
+		if(started) {
+			try {
+				executor.execute(batch::dispatch);
+			} catch(RejectedExecutionException e) {
+				synchronized(this) {
+					close(batch);
+				}
+				batch.results.values().forEach(r -> r.completeExceptionally(e));
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Stop new keys from joining a batch, and wake up its dispatch. Must hold the lock.
+	 */
+	private void close(Batch batch) {
+		if(current == batch) {
+			current = null;
+		}
+		batch.closed = true;
+		notifyAll();
+	}
+	
+	private void tryRest(T key, CompletableFuture<R> result) {
+		try {
+			result.complete(rest.applyThrows(key));
+		} catch(Exception e) {
+			result.completeExceptionally(e);
+		} catch(Throwable t) {
+			result.completeExceptionally(t);
+			throw t;
+		}
+	}
+	
+	private void runRest(T key, CompletableFuture<R> result) {
+		try {
+			executor.execute(() -> tryRest(key, result));
+		} catch(RejectedExecutionException e) {
+			// the key would never complete otherwise
+			tryRest(key, result);
+		}
+	}
+	
+	private class Batch {
+		private final Map<T, CompletableFuture<R>> results = new LinkedHashMap<>();
+		private boolean closed = false;
+		
+		private void dispatch() {
+			Set<T> keys;
+			synchronized(TrialBatcher.this) {
+				long deadline = System.nanoTime() + windowNanos;
+				long remaining = windowNanos;
+				boolean interrupted = false;
+				while(!closed && remaining > 0) {
+					try {
+						TimeUnit.NANOSECONDS.timedWait(TrialBatcher.this, remaining);
+					} catch(InterruptedException e) {
+						interrupted = true;
+					}
+					remaining = deadline - System.nanoTime();
+				}
+				close(this);
+				if(interrupted) {
+					Thread.currentThread().interrupt();
+				}
+				keys = Collections.unmodifiableSet(results.keySet());
+			}
+			
+			Iterator<Map.Entry<T, CompletableFuture<R>>> pending = results.entrySet().iterator();
+			// the result being handled, until it is completed or handed to the executor
+			CompletableFuture<R> handling = null;
+			try {
+				Map<? extends T, ? extends R> found;
+				try {
+					found = bulkTrial.applyThrows(keys);
+				} catch(Exception e) {
+					failureHandler.handle(e, keys);
+					found = Collections.emptyMap();
+				}
+				
+				while(pending.hasNext()) {
+					Map.Entry<T, CompletableFuture<R>> entry = pending.next();
+					T key = entry.getKey();
+					handling = entry.getValue();
+					if(found != null && found.containsKey(key)) {
+						handling.complete(found.get(key));
+					} else {
+						runRest(key, handling);
+					}
+					handling = null;
+				}
+			} catch(Throwable t) {
+				if(handling != null) {
+					handling.completeExceptionally(t);
+				}
+				pending.forEachRemaining(entry -> entry.getValue().completeExceptionally(t));
+				// the callers have the exception through their futures; only an Error is also worth the executor's notice
+				if(t instanceof Error) {
+					throw (Error) t;
+				}
+			}
+		}
+	}
+}
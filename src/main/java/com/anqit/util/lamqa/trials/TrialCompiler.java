@@ -0,0 +1,120 @@
+package com.anqit.util.lamqa.trials;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.anqit.util.lamqa.function.ThrowingBiFunction;
+import com.anqit.util.lamqa.function.ThrowingFunction;
+import com.anqit.util.lamqa.function.ThrowingQuadFunction;
+import com.anqit.util.lamqa.function.ThrowingSupplier;
+import com.anqit.util.lamqa.function.ThrowingTriFunction;
+import com.anqit.util.lamqa.function.ThrowingVarFunction;
+import com.anqit.util.lamqa.trials.exception.BiFunctionExceptionHandler;
+import com.anqit.util.lamqa.trials.exception.ExceptionHandler;
+import com.anqit.util.lamqa.trials.exception.FunctionExceptionHandler;
+import com.anqit.util.lamqa.trials.exception.QuadFunctionExceptionHandler;
+import com.anqit.util.lamqa.trials.exception.TriFunctionExceptionHandler;
+import com.anqit.util.lamqa.trials.exception.VarFunctionExceptionHandler;
+
+/**
+ * Turns the function chain of a {@link TrialAndError} into a single {@link MethodHandle}.
+ * <p>
+ * Each function in the chain is bound into a {@link MethodHandles#catchException} whose handler folds the
+ * trial's {@link ExceptionHandler} into a call to the rest of the chain, ending with the default {@link Supplier}.
+ * The result is a tree of constant method handles, so once the JIT sees it as a constant (e.g. through a
+ * {@code static final} field) it can inline the user's functions instead of dispatching through
+ * {@link TrialAndError#runTrial}'s megamorphic interface calls.
+ */
+final class TrialCompiler {
+	static final MethodHandle SUPPLIER = invoker(ThrowingSupplier.class, "getThrows", methodType(Object.class));
+	static final MethodHandle FUNCTION = invoker(ThrowingFunction.class, "applyThrows", MethodType.genericMethodType(1));
+	static final MethodHandle BI_FUNCTION = invoker(ThrowingBiFunction.class, "applyThrows", MethodType.genericMethodType(2));
+	static final MethodHandle TRI_FUNCTION = invoker(ThrowingTriFunction.class, "applyThrows", MethodType.genericMethodType(3));
+	static final MethodHandle QUAD_FUNCTION = invoker(ThrowingQuadFunction.class, "applyThrows", MethodType.genericMethodType(4));
+	static final MethodHandle VAR_FUNCTION = invoker(ThrowingVarFunction.class, "apply", methodType(Object.class, Object[].class));
+
+	static final MethodHandle HANDLER = handler(ExceptionHandler.class, 0);
+	static final MethodHandle FUNCTION_HANDLER = handler(FunctionExceptionHandler.class, 1);
+	static final MethodHandle BI_FUNCTION_HANDLER = handler(BiFunctionExceptionHandler.class, 2);
+	static final MethodHandle TRI_FUNCTION_HANDLER = handler(TriFunctionExceptionHandler.class, 3);
+	static final MethodHandle QUAD_FUNCTION_HANDLER = handler(QuadFunctionExceptionHandler.class, 4);
+	static final MethodHandle VAR_FUNCTION_HANDLER = invoker(VarFunctionExceptionHandler.class, "handle",
+			methodType(void.class, Exception.class, Object[].class));
+
+	private static final MethodHandle DEFAULT = invoker(Supplier.class, "get", methodType(Object.class));
+	
+	private TrialCompiler() { }
+	
+	/**
+	 * Compile a function chain
+	 * 
+	 * @param trials
+	 * 		the functions to try, in order
+	 * @param handlers
+	 * 		the handler of each function
+	 * @param defaultSupplier
+	 * 		the {@link Supplier} to call if every function throws
+	 * @param trialInvoker
+	 * 		a handle of type {@code (F, A...)Object} that calls a function on the arguments {@code A...}
+	 * @param handlerInvoker
+	 * 		a handle of type {@code (E, Exception, A...)void} that calls a handler on the arguments {@code A...}
+	 * 
+	 * @return
+	 * 		a handle of type {@code (A...)Object} that runs the whole chain
+	 */
+	static MethodHandle compile(List<?> trials, List<?> handlers, Supplier<?> defaultSupplier, 
+			MethodHandle trialInvoker, MethodHandle handlerInvoker) {
+		List<Class<?>> argTypes = trialInvoker.type().dropParameterTypes(0, 1).parameterList();
+		MethodHandle chain = MethodHandles.dropArguments(DEFAULT.bindTo(defaultSupplier), 0, argTypes);
+		
+		for(int i = trials.size() - 1; i >= 0; i--) {
+			MethodHandle attempt = trialInvoker.bindTo(trials.get(i));
+			MethodHandle handle = handlerInvoker.bindTo(handlers.get(i));
+			MethodHandle recover = MethodHandles.foldArguments(MethodHandles.dropArguments(chain, 0, Exception.class), handle);
+			
+			chain = MethodHandles.catchException(attempt, Exception.class, recover);
+		}
+		
+		return chain;
+	}
+	
+	/**
+	 * Convert anything thrown by {@link MethodHandle#invokeExact} into something a throwing function can throw
+	 * 
+	 * @param t
+	 * 		the caught {@link Throwable}
+	 * @return
+	 * 		{@code t} if it is an {@link Exception}, otherwise {@code t} wrapped in an {@link UndeclaredThrowableException}
+	 * @throws Error
+	 * 		if {@code t} is an {@link Error}
+	 */
+	static Exception rethrow(Throwable t) {
+		if(t instanceof Exception) {
+			return (Exception) t;
+		} else if(t instanceof Error) {
+			throw (Error) t;
+		}
+		
+		return new UndeclaredThrowableException(t);
+	}
+	
+	private static MethodHandle handler(Class<?> handlerType, int arity) {
+		return invoker(handlerType, "handle", MethodType.genericMethodType(arity)
+				.changeReturnType(void.class)
+				.insertParameterTypes(0, Exception.class));
+	}
+	
+	private static MethodHandle invoker(Class<?> type, String name, MethodType methodType) {
+		try {
+			return MethodHandles.publicLookup().findVirtual(type, name, methodType);
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+}
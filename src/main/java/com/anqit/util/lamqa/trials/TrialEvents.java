@@ -0,0 +1,52 @@
+package com.anqit.util.lamqa.trials;
+
+/**
+ * Records {@link TrialAndError} attempts and completions as JDK Flight Recorder events.
+ * <p>
+ * Each {@code *Started} method returns a token to pass to the matching {@code *Finished} method, or {@code null}
+ * when nothing is being recorded. Flight Recorder events need Java 11, so this implementation never records anything;
+ * on Java 11+ a version that records {@code com.anqit.lamqa.TrialAttempt} and {@code com.anqit.lamqa.TrialChain}
+ * events is used instead.
+ */
+final class TrialEvents {
+	private TrialEvents() { }
+	
+	/**
+	 * @return a token for the attempt, or {@code null} if it is not recorded
+	 */
+	static Object attemptStarted() {
+		return null;
+	}
+	
+	/**
+	 * @param attempt
+	 * 		the token returned by {@link #attemptStarted()}
+	 * @param chain
+	 * 		the name of the trial
+	 * @param trial
+	 * 		the index of the function that was called
+	 * @param failure
+	 * 		the exception the function threw, or {@code null} if it returned a value
+	 */
+	static void attemptFinished(Object attempt, String chain, int trial, Exception failure) { }
+	
+	/**
+	 * @return a token for the run of the trial, or {@code null} if it is not recorded
+	 */
+	static Object chainStarted() {
+		return null;
+	}
+	
+	/**
+	 * @param run
+	 * 		the token returned by {@link #chainStarted()}
+	 * @param chain
+	 * 		the name of the trial
+	 * @param trial
+	 * 		the index of the function that produced the value (for a quorum, the one whose result completed it), or
+	 * 		{@code -1} if the default was used
+	 * @param failed
+	 * 		whether the run ended with an exception from an exception handler or the default
+	 */
+	static void chainFinished(Object run, String chain, int trial, boolean failed) { }
+}
@@ -0,0 +1,402 @@
+package com.anqit.util.lamqa.trials;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import com.anqit.util.lamqa.function.ThrowingSupplier;
+import com.anqit.util.lamqa.trials.exception.TrialFailedException;
+
+/**
+ * Circuit breakers for the functions of {@link TrialAndError}s, kept in a memory-mapped file so that every process on
+ * the host that opens the same file shares them. Once any process has seen a function fail
+ * {@link #failureThreshold(int) enough times in a row}, every process skips it until it has been
+ * {@link #openFor(long, TimeUnit) open for a while}. Then a single call is let through to probe it: success closes
+ * the breaker, and failure opens it again.
+ * <p>
+ * Breakers are identified by a key, such as the name of the backend a function calls, and attached to a function
+ * with {@link TrialAndError#guardedBy(TrialHealth, String)}. Each breaker holds its failure count, when it is open
+ * until, and when it last failed, updated with atomic operations on the mapped file rather than locks, so a process
+ * that crashes cannot leave anything locked:
+ * <ul>
+ * <li>a breaker is only ever open until a point in time, so it closes even if every process that used it is gone</li>
+ * <li>a probe that never reports back is given up on after the {@link #probeTimeout(long, TimeUnit) probe timeout},
+ * and another call probes instead</li>
+ * <li>failures older than the {@link #staleAfter(long, TimeUnit) stale time} no longer count towards the threshold,
+ * and when the file is full, breakers unused for that long are reused for new keys</li>
+ * </ul>
+ * The settings are per process; processes sharing a file should use the same ones. Times are taken from the wall
+ * clock, since that is the clock processes share.
+ */
+public class TrialHealth {
+	private static final long MAGIC = 0x4C414D5148454C31L;
+	private static final int MAX_CAPACITY = 1 << 20;
+	
+	// the header holds the magic number and the capacity, and each breaker has a cache line to itself
+	private static final int HEADER_SIZE = 64;
+	private static final int MAGIC_OFFSET = 0;
+	private static final int CAPACITY_OFFSET = 8;
+	private static final int SLOT_SIZE = 64;
+	private static final int KEY = 0;
+	private static final int FAILURES = 8;
+	private static final int OPEN_UNTIL = 16;
+	private static final int LAST_FAILURE = 24;
+	private static final int TOUCHED = 32;
+	
+	private final MappedLongs longs;
+	private final int capacity;
+	private int failureThreshold = 5;
+	private long openForMillis = TimeUnit.SECONDS.toMillis(30);
+	private long probeTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+	private long staleAfterMillis = TimeUnit.MINUTES.toMillis(10);
+	
+	private TrialHealth(MappedLongs longs, int capacity) {
+		this.longs = longs;
+		this.capacity = capacity;
+	}
+	
+	/**
+	 * Open the store in the given file, creating it with room for 1024 breakers if it does not exist
+	 * 
+	 * @param file
+	 * 		the file shared by the processes
+	 * @return
+	 * 		a new {@link TrialHealth} instance
+	 * @throws IOException if the file cannot be mapped, or is not a {@link TrialHealth} store
+	 */
+	public static TrialHealth open(Path file) throws IOException {
+		return open(file, 1024);
+	}
+	
+	/**
+	 * Open the store in the given file, creating it if it does not exist. The capacity of an existing store is kept.
+	 * 
+	 * @param file
+	 * 		the file shared by the processes
+	 * @param capacity
+	 * 		the number of breakers the file has room for, if it is created
+	 * @return
+	 * 		a new {@link TrialHealth} instance
+	 * @throws IOException if the file cannot be mapped, or is not a {@link TrialHealth} store
+	 */
+	public static TrialHealth open(Path file, int capacity) throws IOException {
+		if(capacity < 1 || capacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("the capacity must be between 1 and " + MAX_CAPACITY + ": " + capacity);
+		}
+		
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedLongs header = new MappedLongs(channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE));
+			long magic = header.get(MAGIC_OFFSET);
+			if(magic != 0 && magic != MAGIC) {
+				throw new IOException(file + " is not a trial health store");
+			}
+			
+			// whichever process creates the file decides its capacity
+			header.compareAndSet(CAPACITY_OFFSET, 0, capacity);
+			long actual = header.get(CAPACITY_OFFSET);
+			if(actual < 1 || actual > MAX_CAPACITY) {
+				throw new IOException(file + " has an invalid capacity: " + actual);
+			}
+			header.compareAndSet(MAGIC_OFFSET, 0, MAGIC);
+			
+			long size = HEADER_SIZE + actual * SLOT_SIZE;
+			return new TrialHealth(new MappedLongs(channel.map(MapMode.READ_WRITE, 0, size)), (int) actual);
+		}
+	}
+	
+	/**
+	 * Set how many failures in a row open a breaker. The default is 5.
+	 * 
+	 * @param failureThreshold
+	 * 		the number of failures
+	 * @return
+	 * 		this {@link TrialHealth} instance
+	 */
+	public TrialHealth failureThreshold(int failureThreshold) {
+		if(failureThreshold < 1) {
+			throw new IllegalArgumentException("the failure threshold must be positive: " + failureThreshold);
+		}
+		this.failureThreshold = failureThreshold;
+		
+		return this;
+	}
+	
+	/**
+	 * Set how long an open breaker skips its function before letting a probe through. The default is 30 seconds.
+	 * 
+	 * @param openFor
+	 * 		how long the breaker stays open
+	 * @param unit
+	 * 		the unit of {@code openFor}
+	 * @return
+	 * 		this {@link TrialHealth} instance
+	 */
+	public TrialHealth openFor(long openFor, TimeUnit unit) {
+		this.openForMillis = positive(unit.toMillis(openFor));
+		
+		return this;
+	}
+	
+	/**
+	 * Set how long to wait for a probe to report back before letting another one through. The default is 10 seconds.
+	 * 
+	 * @param probeTimeout
+	 * 		how long a probe may take
+	 * @param unit
+	 * 		the unit of {@code probeTimeout}
+	 * @return
+	 * 		this {@link TrialHealth} instance
+	 */
+	public TrialHealth probeTimeout(long probeTimeout, TimeUnit unit) {
+		this.probeTimeoutMillis = positive(unit.toMillis(probeTimeout));
+		
+		return this;
+	}
+	
+	/**
+	 * Set how long before failures no longer count towards the threshold, and before an unused breaker may be reused
+	 * for another key. The default is 10 minutes.
+	 * 
+	 * @param staleAfter
+	 * 		how long until a breaker is stale
+	 * @param unit
+	 * 		the unit of {@code staleAfter}
+	 * @return
+	 * 		this {@link TrialHealth} instance
+	 */
+	public TrialHealth staleAfter(long staleAfter, TimeUnit unit) {
+		this.staleAfterMillis = positive(unit.toMillis(staleAfter));
+		
+		return this;
+	}
+	
+	/**
+	 * @param key
+	 * 		the key of a breaker
+	 * @return {@code true} if the breaker is open, so its function is being skipped
+	 */
+	public boolean isOpen(String key) {
+		int slot = find(hash(key), false);
+		
+		return slot >= 0 && System.currentTimeMillis() < longs.get(slot + OPEN_UNTIL);
+	}
+	
+	/**
+	 * @param key
+	 * 		the key of a breaker
+	 * @return the number of failures in a row seen by any process, or 0 if the breaker is not in the store
+	 */
+	public long getFailureCount(String key) {
+		int slot = find(hash(key), false);
+		
+		return slot < 0 ? 0 : longs.get(slot + FAILURES);
+	}
+	
+	/**
+	 * @param key
+	 * 		the key of a breaker
+	 * @return the time of the last failure, in milliseconds since the epoch, or 0 if there has been none
+	 */
+	public long getLastFailure(String key) {
+		int slot = find(hash(key), false);
+		
+		return slot < 0 ? 0 : longs.get(slot + LAST_FAILURE);
+	}
+	
+	/**
+	 * Get the breaker for a key, which finds its place in the file when it is first used
+	 * 
+	 * @param key
+	 * 		the key of the breaker
+	 * @return the breaker
+	 */
+	Breaker breaker(String key) {
+		return new Breaker(hash(key));
+	}
+	
+	/**
+	 * Find the slot holding the given key, optionally claiming one for it
+	 * 
+	 * @return the byte offset of the slot, or -1 if the key is not stored and no slot could be claimed
+	 */
+	private int find(long key, boolean claim) {
+		int start = (int) Long.remainderUnsigned(key, capacity);
+		for(int i = 0; i < capacity; i++) {
+			int slot = slotOffset((start + i) % capacity);
+			long stored = longs.get(slot + KEY);
+			if(stored == key) {
+				return slot;
+			} else if(stored == 0) {
+				if(!claim) {
+					return -1;
+				} else if(longs.compareAndSet(slot + KEY, 0, key) || longs.get(slot + KEY) == key) {
+					longs.set(slot + TOUCHED, System.currentTimeMillis());
+					return slot;
+				}
+			}
+		}
+		
+		return claim ? reclaim(key, start) : -1;
+	}
+	
+	/**
+	 * Take over a slot whose breaker has not been used for the stale time
+	 */
+	private int reclaim(long key, int start) {
+		long now = System.currentTimeMillis();
+		for(int i = 0; i < capacity; i++) {
+			int slot = slotOffset((start + i) % capacity);
+			long stored = longs.get(slot + KEY);
+			if(now - longs.get(slot + TOUCHED) > staleAfterMillis && longs.compareAndSet(slot + KEY, stored, key)) {
+				longs.set(slot + TOUCHED, now);
+				longs.set(slot + FAILURES, 0);
+				longs.set(slot + OPEN_UNTIL, 0);
+				longs.set(slot + LAST_FAILURE, 0);
+				return slot;
+			}
+		}
+		
+		return -1;
+	}
+	
+	private static int slotOffset(int index) {
+		return HEADER_SIZE + index * SLOT_SIZE;
+	}
+	
+	/**
+	 * A 64-bit FNV-1a hash of the key. 0 marks an empty slot, so it is never returned.
+	 */
+	private static long hash(String key) {
+		long hash = 0xcbf29ce484222325L;
+		for(int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		
+		return hash == 0 ? 1 : hash;
+	}
+	
+	private static long positive(long millis) {
+		if(millis < 1) {
+			throw new IllegalArgumentException("the time must be at least a millisecond: " + millis + "ms");
+		}
+		
+		return millis;
+	}
+	
+	/**
+	 * The breaker for one key, as seen by this process
+	 */
+	final class Breaker {
+		private final long key;
+		// the slot found last time, which is checked on each use in case it has been reused for another key
+		private int slot = -1;
+		// when the store was full, when to look for a slot again
+		private long retryAt = 0;
+		
+		private Breaker(long key) {
+			this.key = key;
+		}
+		
+		/**
+		 * @return {@code true} if the function may be called, either because the breaker is closed or because this
+		 * 		call is the probe
+		 */
+		boolean allows() {
+			int slot = slot();
+			if(slot < 0) {
+				return true;
+			}
+			
+			long openUntil = longs.get(slot + OPEN_UNTIL);
+			if(openUntil == 0) {
+				return true;
+			}
+			
+			long now = System.currentTimeMillis();
+			return now >= openUntil && longs.compareAndSet(slot + OPEN_UNTIL, openUntil, now + probeTimeoutMillis);
+		}
+		
+		void succeeded() {
+			int slot = slot();
+			if(slot < 0) {
+				return;
+			}
+			
+			// a healthy breaker is only written to now and then, to show it is still in use
+			if(longs.get(slot + FAILURES) != 0) {
+				longs.set(slot + FAILURES, 0);
+			}
+			if(longs.get(slot + OPEN_UNTIL) != 0) {
+				longs.set(slot + OPEN_UNTIL, 0);
+			}
+			long now = System.currentTimeMillis();
+			if(now - longs.get(slot + TOUCHED) > staleAfterMillis / 2) {
+				longs.set(slot + TOUCHED, now);
+			}
+		}
+		
+		void failed() {
+			int slot = slot();
+			if(slot < 0) {
+				return;
+			}
+			
+			long now = System.currentTimeMillis();
+			long failures;
+			if(now - longs.get(slot + LAST_FAILURE) > staleAfterMillis) {
+				longs.set(slot + FAILURES, 1);
+				failures = 1;
+			} else {
+				failures = longs.getAndAdd(slot + FAILURES, 1) + 1;
+			}
+			longs.set(slot + LAST_FAILURE, now);
+			longs.set(slot + TOUCHED, now);
+			
+			if(failures >= failureThreshold) {
+				longs.set(slot + OPEN_UNTIL, now + openForMillis);
+			}
+		}
+		
+		/**
+		 * Wrap a function so that it fails with a {@link TrialFailedException} while the breaker is open, and reports
+		 * its outcome to the breaker otherwise
+		 */
+		<R> ThrowingSupplier<R> guarding(ThrowingSupplier<R> attempt) {
+			return () -> {
+				if(!allows()) {
+					throw new TrialFailedException("the circuit breaker is open");
+				}
+				
+				try {
+					R result = attempt.getThrows();
+					succeeded();
+					
+					return result;
+				} catch (Exception e) {
+					failed();
+					throw e;
+				}
+			};
+		}
+		
+		private int slot() {
+			int slot = this.slot;
+			if(slot >= 0 && longs.get(slot + KEY) == key) {
+				return slot;
+			} else if(slot < 0 && retryAt != 0 && System.currentTimeMillis() < retryAt) {
+				return -1;
+			}
+			
+			slot = find(key, true);
+			this.slot = slot;
+			// the function runs unguarded until a slot frees up, rather than searching the full store on every call
+			retryAt = slot < 0 ? System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(1) : 0;
+			
+			return slot;
+		}
+	}
+}
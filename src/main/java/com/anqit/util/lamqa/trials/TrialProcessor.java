@@ -0,0 +1,404 @@
+package com.anqit.util.lamqa.trials;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.anqit.util.lamqa.concurrent.TaskExecutors;
+import com.anqit.util.lamqa.function.ThrowingFunction;
+import com.anqit.util.lamqa.trials.TrialAndError.FunctionalTrialAndError;
+import com.anqit.util.lamqa.trials.exception.FunctionExceptionHandler;
+
+/**
+ * A Reactive Streams {@link Processor} that applies a {@link FunctionalTrialAndError} (or any
+ * {@link ThrowingFunction}) to each element of a stream, on an {@link Executor}.
+ * <p>
+ * Up to {@link #concurrency(int) concurrency} elements are processed at once, and results are emitted in the order
+ * the elements arrived, unless {@link #unordered()} is set. Elements are only requested from upstream while the
+ * elements being processed, plus the results waiting to be emitted, fit within the downstream demand plus
+ * {@link #bufferSize(int) the buffer size}, so downstream demand bounds the work in flight.
+ * <p>
+ * By default, an exception thrown while processing an element cancels upstream and is signalled downstream with
+ * {@code onError}. If a handler is set with {@link #routingFailuresTo(FunctionExceptionHandler)}, the exception is
+ * passed to it instead and the element is dropped. An {@link Error} is always signalled downstream. A {@code null}
+ * result is always dropped, since Reactive Streams does not allow {@code null} elements; this includes the
+ * {@code null} returned by a trial without a {@link TrialAndError#ifAllElseFails(Object) default} when every
+ * function in it fails.
+ * <p>
+ * Use {@code org.reactivestreams.FlowAdapters} to plug a {@link TrialProcessor} into a
+ * {@code java.util.concurrent.Flow} pipeline.
+ *
+ * @param <T>
+ * 		the type of the input elements
+ * @param <R>
+ * 		the type of the output elements
+ */
+public class TrialProcessor<T, R> implements Processor<T, R> {
+	private final ThrowingFunction<? super T, ? extends R> trial;
+	private int concurrency = 1;
+	private int bufferSize = 16;
+	private boolean ordered = true;
+	private Executor executor = TaskExecutors.defaultExecutor();
+	private FunctionExceptionHandler<? super T> failureHandler;
+	
+	private final AtomicInteger wip = new AtomicInteger();
+	// elements in arrival order when ordered, otherwise completed elements in completion order
+	private final Deque<Element> queue = new ArrayDeque<>();
+	private Subscription upstream;
+	private Subscriber<? super R> downstream;
+	private boolean subscribed = false;
+	private long demand = 0;
+	private long pendingUpstream = 0;
+	private int inFlight = 0;
+	private int buffered = 0;
+	private boolean upstreamDone = false;
+	private Throwable error;
+	private boolean terminated = false;
+	
+	private TrialProcessor(ThrowingFunction<? super T, ? extends R> trial) {
+		this.trial = Objects.requireNonNull(trial);
+	}
+	
+	/**
+	 * Create a {@link TrialProcessor} that runs a trial on each element. Elements for which the trial returns
+	 * {@code null}, such as when every function fails and no default is set, are dropped.
+	 * 
+	 * @param trial
+	 * 		the trial to run
+	 * @return
+	 * 		a new {@link TrialProcessor} instance
+	 */
+	public static <T, R> TrialProcessor<T, R> of(FunctionalTrialAndError<T, R> trial) {
+		return new TrialProcessor<>(trial::on);
+	}
+	
+	/**
+	 * Create a {@link TrialProcessor} that applies a function to each element, such as a
+	 * {@link FunctionalTrialAndError#compile() compiled trial}
+	 * 
+	 * @param function
+	 * 		the function to apply
+	 * @return
+	 * 		a new {@link TrialProcessor} instance
+	 */
+	public static <T, R> TrialProcessor<T, R> of(ThrowingFunction<? super T, ? extends R> function) {
+		return new TrialProcessor<>(function);
+	}
+	
+	/**
+	 * Set the maximum number of elements to process at the same time. The default is 1.
+	 * 
+	 * @param concurrency
+	 * 		the maximum number of elements in flight
+	 * @return
+	 * 		this {@link TrialProcessor} instance
+	 */
+	public TrialProcessor<T, R> concurrency(int concurrency) {
+		if(concurrency < 1) {
+			throw new IllegalArgumentException("concurrency must be positive: " + concurrency);
+		}
+		this.concurrency = concurrency;
+		
+		return this;
+	}
+	
+	/**
+	 * Set how many elements beyond the downstream demand may be processed ahead of time. The default is 16.
+	 * 
+	 * @param bufferSize
+	 * 		the number of extra elements
+	 * @return
+	 * 		this {@link TrialProcessor} instance
+	 */
+	public TrialProcessor<T, R> bufferSize(int bufferSize) {
+		if(bufferSize < 0) {
+			throw new IllegalArgumentException("the buffer size cannot be negative: " + bufferSize);
+		}
+		this.bufferSize = bufferSize;
+		
+		return this;
+	}
+	
+	/**
+	 * Emit results as soon as they are ready, rather than in the order the elements arrived
+	 * 
+	 * @return
+	 * 		this {@link TrialProcessor} instance
+	 */
+	public TrialProcessor<T, R> unordered() {
+		this.ordered = false;
+		
+		return this;
+	}
+	
+	/**
+	 * Set the {@link Executor} to process elements on. By default, {@link TaskExecutors#defaultExecutor()} is used.
+	 * 
+	 * @param executor
+	 * 		the {@link Executor} to process elements on
+	 * @return
+	 * 		this {@link TrialProcessor} instance
+	 */
+	public TrialProcessor<T, R> on(Executor executor) {
+		this.executor = Objects.requireNonNull(executor);
+		
+		return this;
+	}
+	
+	/**
+	 * Pass exceptions thrown while processing an element to a handler and drop the element, rather than
+	 * signalling them downstream. {@link Error}s are still signalled downstream.
+	 * 
+	 * @param failureHandler
+	 * 		the handler to call with the exception and the element
+	 * @return
+	 * 		this {@link TrialProcessor} instance
+	 */
+	public TrialProcessor<T, R> routingFailuresTo(FunctionExceptionHandler<? super T> failureHandler) {
+		this.failureHandler = Objects.requireNonNull(failureHandler);
+		
+		return this;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super R> subscriber) {
+		Objects.requireNonNull(subscriber);
+		
+		boolean first;
+		synchronized(this) {
+			first = !subscribed;
+			subscribed = true;
+		}
+		
+		if(!first) {
+			subscriber.onSubscribe(new Subscription() {
+				@Override public void request(long n) { }
+				@Override public void cancel() { }
+			});
+			subscriber.onError(new IllegalStateException("a TrialProcessor only supports a single subscriber"));
+			return;
+		}
+		
+		subscriber.onSubscribe(new Subscription() {
+			@Override
+			public void request(long n) {
+				synchronized(TrialProcessor.this) {
+					if(n <= 0) {
+						error = new IllegalArgumentException("non-positive request: " + n);
+					} else {
+						demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+					}
+				}
+				drain();
+			}
+			
+			@Override
+			public void cancel() {
+				Subscription toCancel;
+				synchronized(TrialProcessor.this) {
+					terminated = true;
+					queue.clear();
+					toCancel = upstream;
+				}
+				if(toCancel != null) {
+					toCancel.cancel();
+				}
+			}
+		});
+		
+		synchronized(this) {
+			downstream = subscriber;
+		}
+		drain();
+	}
+
+	@Override
+	public void onSubscribe(Subscription subscription) {
+		Objects.requireNonNull(subscription);
+		
+		synchronized(this) {
+			if(upstream == null && !terminated) {
+				upstream = subscription;
+				subscription = null;
+			}
+		}
+		
+		if(subscription != null) {
+			subscription.cancel();
+		} else {
+			drain();
+		}
+	}
+
+	@Override
+	public void onNext(T t) {
+		Objects.requireNonNull(t);
+		
+		Element element = new Element(t);
+		synchronized(this) {
+			if(terminated) {
+				return;
+			}
+			pendingUpstream--;
+			inFlight++;
+			if(ordered) {
+				queue.add(element);
+			}
+		}
+		
+		try {
+			executor.execute(() -> process(element));
+		} catch (RejectedExecutionException e) {
+			element.failure = e;
+			completed(element);
+		}
+	}
+
+	@Override
+	public void onError(Throwable t) {
+		Objects.requireNonNull(t);
+		
+		synchronized(this) {
+			upstreamDone = true;
+			if(error == null) {
+				error = t;
+			}
+		}
+		drain();
+	}
+
+	@Override
+	public void onComplete() {
+		synchronized(this) {
+			upstreamDone = true;
+		}
+		drain();
+	}
+	
+	private void process(Element element) {
+		try {
+			element.result = trial.applyThrows(element.input);
+		} catch (Throwable t) {
+			// an Error too, or the element would never complete and the stream would hang
+			element.failure = t;
+		}
+		
+		completed(element);
+	}
+	
+	private void completed(Element element) {
+		synchronized(this) {
+			element.done = true;
+			inFlight--;
+			buffered++;
+			if(!ordered) {
+				queue.add(element);
+			}
+		}
+		drain();
+	}
+	
+	/**
+	 * Signal downstream and request from upstream as far as the current state allows. Only one thread drains at a
+	 * time, so downstream signals are never concurrent; a thread that finds another draining leaves it another pass.
+	 */
+	private void drain() {
+		if(wip.getAndIncrement() != 0) {
+			return;
+		}
+		
+		int missed = 1;
+		do {
+			while(step()) { }
+			missed = wip.addAndGet(-missed);
+		} while(missed != 0);
+	}
+	
+	/**
+	 * @return {@code true} if anything was signalled, so there may be more to do
+	 */
+	private boolean step() {
+		Subscriber<? super R> subscriber;
+		Subscription subscription;
+		Element next = null;
+		Throwable failure = null;
+		boolean complete = false;
+		long request = 0;
+		
+		synchronized(this) {
+			subscriber = downstream;
+			subscription = upstream;
+			if(subscriber == null || terminated) {
+				return false;
+			}
+			
+			Element head = queue.peek();
+			if(error != null) {
+				failure = error;
+			} else if(head != null && head.done && head.failure != null && !(failureHandler != null && head.failure instanceof Exception)) {
+				failure = head.failure;
+			} else if(head != null && head.done && (demand > 0 || !head.emits())) {
+				next = queue.poll();
+				buffered--;
+				if(next.emits()) {
+					demand--;
+				}
+			} else if(upstreamDone && inFlight == 0 && queue.isEmpty()) {
+				complete = true;
+			} else if(subscription != null && !upstreamDone) {
+				long started = pendingUpstream + inFlight;
+				long byDemand = (demand + bufferSize < 0 ? Long.MAX_VALUE : demand + bufferSize) - started - buffered;
+				request = Math.max(0, Math.min(concurrency - started, byDemand));
+				pendingUpstream += request;
+			}
+			
+			if(failure != null || complete) {
+				terminated = true;
+				queue.clear();
+			}
+		}
+		
+		if(failure != null) {
+			if(subscription != null && !upstreamDone) {
+				subscription.cancel();
+			}
+			subscriber.onError(failure);
+		} else if(complete) {
+			subscriber.onComplete();
+		} else if(next != null) {
+			if(next.failure != null) {
+				failureHandler.handle((Exception) next.failure, next.input);
+			} else if(next.result != null) {
+				subscriber.onNext(next.result);
+			}
+		} else if(request > 0) {
+			subscription.request(request);
+		} else {
+			return false;
+		}
+		
+		return true;
+	}
+	
+	private class Element {
+		final T input;
+		volatile R result;
+		volatile Throwable failure;
+		boolean done = false;
+		
+		Element(T input) {
+			this.input = input;
+		}
+		
+		boolean emits() {
+			return failure == null && result != null;
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package com.anqit.util.lamqa.trials.exception;
+
+import com.anqit.util.lamqa.function.Accepts;
+import com.anqit.util.lamqa.function.ThrowingQuadFunction;
+
+/**
+ * A consumer that handles an {@link Exception} thrown by a {@link ThrowingQuadFunction}.
+ * The first argument is the {@link Exception} thrown, and the rest are designed to be the
+ * inputs to the {@link ThrowingQuadFunction} that caused the exception
+ *
+ * @param <T>
+ * 		The type of the first argument of the function that threw the exception
+ * @param <U>
+ * 		The type of the second argument of the function that threw the exception
+ * @param <V>
+ * 		The type of the third argument of the function that threw the exception
+ * @param <W>
+ * 		The type of the fourth argument of the function that threw the exception
+ */
+@FunctionalInterface
+public interface QuadFunctionExceptionHandler<T, U, V, W> extends Accepts<Exception> {
+	/**
+	 * The method to handle the exception
+	 * 
+	 * @param e
+	 * @param t
+	 * @param u
+	 * @param v
+	 * @param w
+	 */
+	void handle(Exception e, T t, U u, V v, W w);
+	
+	/**
+	 * A no-op implementation
+	 * 
+	 * @return
+	 * 		an exception handler that does nothing
+	 */
+	static <T, U, V, W> QuadFunctionExceptionHandler<T, U, V, W> NOOP() {
+		return (e, t, u, v, w) -> {};
+	}
+}
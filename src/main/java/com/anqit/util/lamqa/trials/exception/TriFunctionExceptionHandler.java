@@ -0,0 +1,39 @@
+package com.anqit.util.lamqa.trials.exception;
+
+import com.anqit.util.lamqa.function.Accepts;
+import com.anqit.util.lamqa.function.ThrowingTriFunction;
+
+/**
+ * A consumer that handles an {@link Exception} thrown by a {@link ThrowingTriFunction}.
+ * The first argument is the {@link Exception} thrown, and the rest are designed to be the
+ * inputs to the {@link ThrowingTriFunction} that caused the exception
+ *
+ * @param <T>
+ * 		The type of the first argument of the function that threw the exception
+ * @param <U>
+ * 		The type of the second argument of the function that threw the exception
+ * @param <V>
+ * 		The type of the third argument of the function that threw the exception
+ */
+@FunctionalInterface
+public interface TriFunctionExceptionHandler<T, U, V> extends Accepts<Exception> {
+	/**
+	 * The method to handle the exception
+	 * 
+	 * @param e
+	 * @param t
+	 * @param u
+	 * @param v
+	 */
+	void handle(Exception e, T t, U u, V v);
+	
+	/**
+	 * A no-op implementation
+	 * 
+	 * @return
+	 * 		an exception handler that does nothing
+	 */
+	static <T, U, V> TriFunctionExceptionHandler<T, U, V> NOOP() {
+		return (e, t, u, v) -> {};
+	}
+}
@@ -0,0 +1,28 @@
+package com.anqit.util.lamqa.trials.exception;
+
+import com.anqit.util.lamqa.function.Accepts;
+import com.anqit.util.lamqa.function.ThrowingVarFunction;
+
+/**
+ * A consumer that handles an {@link Exception} thrown by a {@link ThrowingVarFunction}.
+ * The first argument is the {@link Exception} thrown, and the second is the array of
+ * inputs passed to the {@link ThrowingVarFunction} that caused the exception
+ */
+@FunctionalInterface
+public interface VarFunctionExceptionHandler extends Accepts<Exception> {
+	/**
+	 * The method to handle the exception
+	 * 
+	 * @param e
+	 * 		the exception to handle
+	 * @param args
+	 * 		the inputs that caused the function to throw the exception. The array may be reused
+	 * 		by the caller once this method returns, so it should be copied if it needs to be retained
+	 */
+	void handle(Exception e, Object[] args);
+	
+	/**
+	 * A no-op excpetion handler
+	 */
+	static VarFunctionExceptionHandler NOOP = (e, args) -> {};
+}
@@ -0,0 +1,47 @@
+package com.anqit.util.lamqa.jfr;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * Tracks whether a JDK Flight Recorder recording is running, so that lamqa's event classes can skip creating events
+ * otherwise. For use by lamqa itself, not part of its API.
+ * <p>
+ * The state is kept up to date by a {@link FlightRecorderListener}, so checking it is a single {@code volatile} read.
+ */
+public final class Recordings {
+	private static volatile boolean active = false;
+	
+	static {
+		try {
+			FlightRecorder.addListener(new FlightRecorderListener() {
+				@Override
+				public void recorderInitialized(FlightRecorder recorder) {
+					update(recorder);
+				}
+				
+				@Override
+				public void recordingStateChanged(Recording changed) {
+					update(FlightRecorder.getFlightRecorder());
+				}
+			});
+		} catch (LinkageError | SecurityException e) {
+			// the jdk.jfr module is not available, so there is never anything to record
+		}
+	}
+	
+	private Recordings() { }
+	
+	/**
+	 * @return {@code true} if a recording is running
+	 */
+	public static boolean isActive() {
+		return active;
+	}
+	
+	private static void update(FlightRecorder recorder) {
+		active = recorder.getRecordings().stream().anyMatch(r -> r.getState() == RecordingState.RUNNING);
+	}
+}
@@ -0,0 +1,21 @@
+package com.anqit.util.lamqa.objects;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("com.anqit.lamqa.LazyValueEvaluation")
+@Label("LazyValue Evaluation")
+@Category({ "lamqa", "Lazy Values" })
+@Description("A call to the Supplier of a LazyValue, the first time its value was needed or when it was refreshed")
+@Threshold("1 ms")
+class LazyValueEvaluationEvent extends Event {
+	@Label("Refresh")
+	boolean refresh;
+	
+	@Label("Value Class")
+	Class<?> valueClass;
+}
@@ -0,0 +1,51 @@
+package com.anqit.util.lamqa.objects;
+
+import com.anqit.util.lamqa.jfr.Recordings;
+
+/**
+ * Records {@link LazyValue} evaluations as JDK Flight Recorder events. While no recording is running, the only cost
+ * is a {@code volatile} read, and nothing is allocated.
+ */
+final class LazyValueEvents {
+	private LazyValueEvents() { }
+	
+	/**
+	 * @return a token to pass to {@link #evaluationFinished(Object, boolean, Object)}, or {@code null} if the
+	 * 		evaluation is not recorded
+	 */
+	static Object evaluationStarted() {
+		if(!Recordings.isActive()) {
+			return null;
+		}
+		
+		LazyValueEvaluationEvent event = new LazyValueEvaluationEvent();
+		if(!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		
+		return event;
+	}
+	
+	/**
+	 * @param evaluation
+	 * 		the token returned by {@link #evaluationStarted()}
+	 * @param refresh
+	 * 		whether the value was {@link LazyValue#refresh() refreshed}, rather than evaluated for the first time
+	 * @param value
+	 * 		the value the {@link java.util.function.Supplier Supplier} returned
+	 */
+	static void evaluationFinished(Object evaluation, boolean refresh, Object value) {
+		if(evaluation == null) {
+			return;
+		}
+		
+		LazyValueEvaluationEvent event = (LazyValueEvaluationEvent) evaluation;
+		event.end();
+		if(event.shouldCommit()) {
+			event.refresh = refresh;
+			event.valueClass = value == null ? null : value.getClass();
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package com.anqit.util.lamqa.trials;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("com.anqit.lamqa.TrialAttempt")
+@Label("Trial Attempt")
+@Category({ "lamqa", "Trials" })
+@Description("A call to one of the functions of a TrialAndError")
+@StackTrace(false)
+@Threshold("1 ms")
+class TrialAttemptEvent extends Event {
+	@Label("Chain")
+	String chain;
+	
+	@Label("Trial Index")
+	@Description("The position of the function in the chain, starting at 0")
+	int trial;
+	
+	@Label("Outcome")
+	@Description("Either success or failure")
+	String outcome;
+	
+	@Label("Exception Class")
+	Class<?> exceptionClass;
+}
@@ -0,0 +1,31 @@
+package com.anqit.util.lamqa.trials;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("com.anqit.lamqa.TrialChain")
+@Label("Trial Chain")
+@Category({ "lamqa", "Trials" })
+@Description("A run of a TrialAndError, from its first function to the one that produced the value")
+@StackTrace(false)
+@Threshold("1 ms")
+class TrialChainEvent extends Event {
+	@Label("Chain")
+	String chain;
+	
+	@Label("Trial Index")
+	@Description("The position of the function that produced the value (for a quorum, the one whose result completed it), or -1 if the default was used")
+	int trial;
+	
+	@Label("Default Used")
+	boolean defaultUsed;
+	
+	@Label("Failed")
+	@Description("Whether an exception handler or the default threw, so that the chain produced no value")
+	boolean failed;
+}
@@ -0,0 +1,101 @@
+package com.anqit.util.lamqa.trials;
+
+import com.anqit.util.lamqa.jfr.Recordings;
+
+/**
+ * Records {@link TrialAndError} attempts and completions as JDK Flight Recorder events.
+ * <p>
+ * Each {@code *Started} method returns a token to pass to the matching {@code *Finished} method, or {@code null}
+ * when nothing is being recorded. While no recording is running, the only cost is a {@code volatile} read, and
+ * nothing is allocated.
+ */
+final class TrialEvents {
+	private TrialEvents() { }
+	
+	/**
+	 * @return a token for the attempt, or {@code null} if it is not recorded
+	 */
+	static Object attemptStarted() {
+		if(!Recordings.isActive()) {
+			return null;
+		}
+		
+		TrialAttemptEvent event = new TrialAttemptEvent();
+		if(!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		
+		return event;
+	}
+	
+	/**
+	 * @param attempt
+	 * 		the token returned by {@link #attemptStarted()}
+	 * @param chain
+	 * 		the name of the trial
+	 * @param trial
+	 * 		the index of the function that was called
+	 * @param failure
+	 * 		the exception the function threw, or {@code null} if it returned a value
+	 */
+	static void attemptFinished(Object attempt, String chain, int trial, Exception failure) {
+		if(attempt == null) {
+			return;
+		}
+		
+		TrialAttemptEvent event = (TrialAttemptEvent) attempt;
+		event.end();
+		if(event.shouldCommit()) {
+			event.chain = chain;
+			event.trial = trial;
+			event.outcome = failure == null ? "success" : "failure";
+			event.exceptionClass = failure == null ? null : failure.getClass();
+			event.commit();
+		}
+	}
+	
+	/**
+	 * @return a token for the run of the trial, or {@code null} if it is not recorded
+	 */
+	static Object chainStarted() {
+		if(!Recordings.isActive()) {
+			return null;
+		}
+		
+		TrialChainEvent event = new TrialChainEvent();
+		if(!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		
+		return event;
+	}
+	
+	/**
+	 * @param run
+	 * 		the token returned by {@link #chainStarted()}
+	 * @param chain
+	 * 		the name of the trial
+	 * @param trial
+	 * 		the index of the function that produced the value (for a quorum, the one whose result completed it), or
+	 * 		{@code -1} if the default was used
+	 * @param failed
+	 * 		whether the run ended with an exception from an exception handler or the default
+	 */
+	static void chainFinished(Object run, String chain, int trial, boolean failed) {
+		if(run == null) {
+			return;
+		}
+		
+		TrialChainEvent event = (TrialChainEvent) run;
+		event.end();
+		if(event.shouldCommit()) {
+			event.chain = chain;
+			event.trial = trial;
+			event.defaultUsed = trial < 0 && !failed;
+			event.failed = failed;
+			event.commit();
+		}
+	}
+}
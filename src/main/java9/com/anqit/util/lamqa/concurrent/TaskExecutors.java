@@ -0,0 +1,87 @@
+package com.anqit.util.lamqa.concurrent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link Executor}s used to run work asynchronously when a caller does not provide one.
+ * <p>
+ * When the runtime has virtual threads, these are virtual-thread-per-task executors. Otherwise they are cached
+ * pools of daemon threads, so tasks that block never wait on each other. Virtual threads are looked up at runtime, so
+ * this class does not need to be compiled against a JDK that has them, and are not used where they are only a preview
+ * feature that has not been enabled.
+ */
+public final class TaskExecutors {
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+	private static final MethodHandle NEW_VIRTUAL_EXECUTOR = findVirtualExecutorFactory();
+	private static final Executor DEFAULT = newTaskExecutor();
+	
+	private TaskExecutors() { }
+	
+	/**
+	 * @return the shared {@link Executor} for tasks that may block
+	 */
+	public static Executor defaultExecutor() {
+		return DEFAULT;
+	}
+	
+	/**
+	 * Create a new {@link ExecutorService} that runs each task as soon as it is submitted, rather than queuing it
+	 * 
+	 * @return a new {@link ExecutorService}, which the caller is responsible for shutting down
+	 */
+	public static ExecutorService newTaskExecutor() {
+		if(NEW_VIRTUAL_EXECUTOR != null) {
+			try {
+				return (ExecutorService) NEW_VIRTUAL_EXECUTOR.invokeExact();
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new UndeclaredThrowableException(t);
+			}
+		}
+		
+		return Executors.newCachedThreadPool(task -> {
+			Thread thread = new Thread(task, "lamqa-task-" + THREAD_COUNT.incrementAndGet());
+			thread.setDaemon(true);
+			
+			return thread;
+		});
+	}
+	
+	/**
+	 * @return {@code true} if the executors run tasks on virtual threads
+	 */
+	public static boolean usesVirtualThreads() {
+		return NEW_VIRTUAL_EXECUTOR != null;
+	}
+	
+	private static MethodHandle findVirtualExecutorFactory() {
+		MethodHandle factory;
+		try {
+			factory = MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+					MethodType.methodType(ExecutorService.class));
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			return null;
+		}
+		
+		// on JDK 19 and 20 virtual threads are a preview feature, and the factory throws unless previews are enabled
+		try {
+			((ExecutorService) factory.invokeExact()).shutdown();
+		} catch (UnsupportedOperationException e) {
+			return null;
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new UndeclaredThrowableException(t);
+		}
+		
+		return factory;
+	}
+}
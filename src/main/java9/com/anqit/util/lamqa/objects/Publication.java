@@ -0,0 +1,40 @@
+package com.anqit.util.lamqa.objects;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Holds a single reference that is written by one thread and safely read by others.
+ * <p>
+ * A {@code null} reference means nothing has been published yet, so subclasses must mask {@code null} values.
+ * This implementation uses acquire/release access through a {@link VarHandle}, which avoids the full fence
+ * of a {@code volatile} write.
+ */
+abstract class Publication {
+	private static final VarHandle PUBLISHED;
+	static {
+		try {
+			PUBLISHED = MethodHandles.lookup().findVarHandle(Publication.class, "published", Object.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+	
+	private Object published;
+	
+	/**
+	 * @return the last published reference, or {@code null} if nothing has been published
+	 */
+	final Object acquire() {
+		return PUBLISHED.getAcquire(this);
+	}
+	
+	/**
+	 * Publish a reference, making everything written before this call visible to threads that {@link #acquire()} it
+	 * 
+	 * @param value the reference to publish, or {@code null} to clear it
+	 */
+	final void release(Object value) {
+		PUBLISHED.setRelease(this, value);
+	}
+}
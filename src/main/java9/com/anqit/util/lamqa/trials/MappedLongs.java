@@ -0,0 +1,42 @@
+package com.anqit.util.lamqa.trials;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Volatile and atomic access to the {@code long}s of a memory-mapped file. The operations are the processor's own
+ * atomic instructions on the mapped memory, so they stay atomic across processes that map the same file.
+ * <p>
+ * This implementation uses a {@code VarHandle} view of the buffer in the platform's native byte order, as the Java 8
+ * version does, so processes on either can share a file.
+ */
+final class MappedLongs {
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+	
+	private final MappedByteBuffer buffer;
+	
+	MappedLongs(MappedByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+	
+	/**
+	 * @param offset the byte offset of the {@code long}, which must be a multiple of 8
+	 */
+	long get(int offset) {
+		return (long) LONGS.getVolatile(buffer, offset);
+	}
+	
+	void set(int offset, long value) {
+		LONGS.setVolatile(buffer, offset, value);
+	}
+	
+	boolean compareAndSet(int offset, long expected, long value) {
+		return LONGS.compareAndSet(buffer, offset, expected, value);
+	}
+	
+	long getAndAdd(int offset, long delta) {
+		return (long) LONGS.getAndAdd(buffer, offset, delta);
+	}
+}
@@ -0,0 +1,37 @@
+package com.anqit.util.lamqa.trials.exception;
+
+import java.lang.StackWalker.Option;
+import java.lang.StackWalker.StackFrame;
+
+import com.anqit.util.lamqa.trials.TrialAndError;
+
+/**
+ * An Exception indicating that a trial in a {@link TrialAndError} run has failed
+ * <p>
+ * Since this exception is routinely thrown to move on to the next function in a trial, it only captures the
+ * innermost {@value #MAX_FRAMES} frames of the stack, using a {@link StackWalker}, rather than the whole stack
+ */
+public class TrialFailedException extends Exception {
+	private static final long serialVersionUID = 1L;
+	private static final int MAX_FRAMES = 16;
+	private static final StackWalker WALKER = StackWalker.getInstance(Option.RETAIN_CLASS_REFERENCE);
+
+	/**
+	 * create a {@link TrialFailedException} with the given message
+	 * @param message
+	 */
+	public TrialFailedException(String message) {
+		super(message);
+	}
+	
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		setStackTrace(WALKER.walk(frames -> frames
+				.dropWhile(frame -> Throwable.class.isAssignableFrom(frame.getDeclaringClass()))
+				.limit(MAX_FRAMES)
+				.map(StackFrame::toStackTraceElement)
+				.toArray(StackTraceElement[]::new)));
+		
+		return this;
+	}
+}
@@ -0,0 +1,154 @@
+package com.anqit.util.lamqa;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.anqit.util.lamqa.function.ThrowingVarFunction;
+import com.anqit.util.lamqa.objects.LazyArray;
+import com.anqit.util.lamqa.objects.LazyValue;
+import com.anqit.util.lamqa.objects.MoreOptional;
+import com.anqit.util.lamqa.trials.TrialAndError;
+import com.anqit.util.lamqa.trials.TrialAndError.BiFunctionalTrialAndError;
+import com.anqit.util.lamqa.trials.TrialAndError.FunctionalTrialAndError;
+import com.anqit.util.lamqa.trials.TrialAndError.NoArgTrialAndError;
+import com.anqit.util.lamqa.trials.TrialAndError.QuadFunctionalTrialAndError;
+import com.anqit.util.lamqa.trials.TrialAndError.TriFunctionalTrialAndError;
+import com.anqit.util.lamqa.trials.TrialAndError.VarFunctionalTrialAndError;
+
+/**
+ * Allocation budgets for the hot paths. Each operation is warmed up, then run many times while the bytes allocated
+ * by the current thread are counted. An operation that must not allocate may only account for a few stray objects
+ * across all of the runs, far less than one object per call.
+ */
+public class AllocationTest {
+	private static final int WARM_UP = 50_000;
+	private static final int MEASURED = 200_000;
+	// the total bytes an operation that does not allocate may still be charged with, e.g. by the JIT or the profiler
+	private static final long NO_ALLOCATION_TOLERANCE = 1024;
+	
+	private static com.sun.management.ThreadMXBean threads;
+	private static Object sink;
+	
+	@BeforeAll
+	public static void checkSupport() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assumptions.assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "per-thread allocation counters are not available");
+		threads = (com.sun.management.ThreadMXBean) bean;
+		Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported(), "per-thread allocation counters are not supported");
+		threads.setThreadAllocatedMemoryEnabled(true);
+	}
+	
+	@Test
+	public void testWarmLazyValueGet() {
+		LazyValue<String> value = LazyValue.of(() -> "value");
+		
+		assertNoAllocation(value::get);
+	}
+	
+	@Test
+	public void testWarmLazyArrayGet() {
+		LazyArray<String> array = LazyArray.of(4, i -> "value");
+		array.get(1);
+		
+		assertNoAllocation(() -> array.get(1));
+	}
+	
+	@Test
+	public void testNoArgFirstTrialSuccess() {
+		NoArgTrialAndError<String> trial = TrialAndError.firstTry(() -> "first")
+				.orElseTry(() -> "second");
+		
+		assertNoAllocation(trial::run);
+	}
+	
+	@Test
+	public void testFunctionalFirstTrialSuccess() {
+		String arg = "arg";
+		FunctionalTrialAndError<String, String> trial = TrialAndError.<String, String>firstTry(s -> s)
+				.orElseTry(s -> "second");
+		
+		assertNoAllocation(() -> trial.on(arg));
+	}
+	
+	@Test
+	public void testBiFunctionalFirstTrialSuccess() {
+		String first = "first", second = "second";
+		BiFunctionalTrialAndError<String, String, String> trial = TrialAndError.<String, String, String>firstTry((s, t) -> s)
+				.orElseTry((s, t) -> t);
+		
+		assertNoAllocation(() -> trial.on(first, second));
+	}
+	
+	@Test
+	public void testTriFunctionalFirstTrialSuccess() {
+		String first = "first", second = "second", third = "third";
+		TriFunctionalTrialAndError<String, String, String, String> trial = TrialAndError.<String, String, String, String>firstTry((s, t, u) -> u)
+				.orElseTry((s, t, u) -> s);
+		
+		assertNoAllocation(() -> trial.on(first, second, third));
+	}
+	
+	@Test
+	public void testQuadFunctionalFirstTrialSuccess() {
+		String first = "first", second = "second", third = "third", fourth = "fourth";
+		QuadFunctionalTrialAndError<String, String, String, String, String> trial = TrialAndError.<String, String, String, String, String>firstTry((s, t, u, v) -> v)
+				.orElseTry((s, t, u, v) -> s);
+		
+		assertNoAllocation(() -> trial.on(first, second, third, fourth));
+	}
+	
+	@Test
+	public void testVarFunctionalFirstTrialSuccess() {
+		String first = "first", second = "second", third = "third";
+		VarFunctionalTrialAndError<Object> trial = TrialAndError.firstTryVarArgs(new ThrowingVarFunction<Object>() {
+			@Override
+			@SafeVarargs
+			public final <A> Object apply(A... objects) {
+				return objects[objects.length - 1];
+			}
+		});
+		
+		assertNoAllocation(() -> trial.arguments(3).with(first).with(second).with(third).run());
+	}
+	
+	@Test
+	public void testMoreOptionalMap() {
+		Function<String, String> mapper = v -> "mapped";
+		MoreOptional<String> present = MoreOptional.of("value");
+		MoreOptional<String> empty = MoreOptional.empty();
+		
+		assertNoAllocation(() -> empty.map(mapper));
+		// the new MoreOptional and the Optional it wraps
+		double perCall = (double) allocatedBytes(() -> present.map(mapper)) / MEASURED;
+		assertTrue("MoreOptional.map allocated " + perCall + " bytes per call", perCall <= 48);
+	}
+	
+	private static void assertNoAllocation(Supplier<?> operation) {
+		long allocated = allocatedBytes(operation);
+		assertTrue(allocated + " bytes were allocated over " + MEASURED + " calls", allocated <= NO_ALLOCATION_TOLERANCE);
+	}
+	
+	/**
+	 * @return the total bytes allocated by {@link #MEASURED} calls of the warmed up operation
+	 */
+	private static long allocatedBytes(Supplier<?> operation) {
+		for(int i = 0; i < WARM_UP; i++) {
+			sink = operation.get();
+		}
+		
+		long threadId = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for(int i = 0; i < MEASURED; i++) {
+			sink = operation.get();
+		}
+		
+		return threads.getThreadAllocatedBytes(threadId) - before;
+	}
+}
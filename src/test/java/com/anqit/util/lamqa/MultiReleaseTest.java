@@ -0,0 +1,156 @@
+package com.anqit.util.lamqa;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import com.anqit.util.lamqa.concurrent.TaskExecutors;
+import com.anqit.util.lamqa.objects.LazyValue;
+import com.anqit.util.lamqa.trials.Quorum;
+import com.anqit.util.lamqa.trials.TrialAndError;
+import com.anqit.util.lamqa.trials.exception.TrialFailedException;
+
+/**
+ * Run by surefire against the compiled classes, these tests see the Java 8 implementations. Run by failsafe against
+ * the packaged multi-release jar, they see the versioned implementations.
+ */
+public class MultiReleaseTest {
+	private static final String[] VERSIONED_CLASSES = {
+			"com.anqit.util.lamqa.objects.Publication",
+			"com.anqit.util.lamqa.trials.exception.TrialFailedException",
+			"com.anqit.util.lamqa.concurrent.TaskExecutors",
+			"com.anqit.util.lamqa.trials.TrialEvents",
+			"com.anqit.util.lamqa.trials.MappedLongs",
+			"com.anqit.util.lamqa.objects.LazyValueEvents",
+			"com.anqit.util.lamqa.jfr.Recordings",
+	};
+	
+	@Test
+	public void testVersionedClassesAreUsedFromTheJar() throws ClassNotFoundException {
+		boolean expectVersioned = isLoadedFromJar() && !System.getProperty("java.specification.version").startsWith("1.");
+
+		for(String className : VERSIONED_CLASSES) {
+			assertThat(className, isVersioned(Class.forName(className)), is(expectVersioned));
+		}
+	}
+	
+	@Test
+	public void testTrialFailedExceptionStackTrace() {
+		try {
+			TrialAndError.failTrial("failed");
+			throw new AssertionError("expected a TrialFailedException");
+		} catch(TrialFailedException e) {
+			StackTraceElement[] stackTrace = e.getStackTrace();
+			
+			assertThat(stackTrace[0].getMethodName(), is("failTrial"));
+			assertThat(stackTrace[1].getMethodName(), is("testTrialFailedExceptionStackTrace"));
+			assertThat(stackTrace.length <= 16, is(isVersioned(TrialFailedException.class)));
+		}
+	}
+	
+	@Test
+	public void testTaskExecutorRunsTasks() throws Exception {
+		assertTrue(TaskExecutors.newTaskExecutor().submit(() -> true).get());
+		assertThat(TaskExecutors.usesVirtualThreads(), is(isVersioned(TaskExecutors.class) && hasVirtualThreads()));
+	}
+	
+	@Test
+	public void testFlightRecorderEvents() throws Exception {
+		Assumptions.assumeTrue(isVersioned(Class.forName("com.anqit.util.lamqa.trials.TrialEvents")));
+		
+		// the tests are compiled for Java 8, so the jdk.jfr API is used reflectively
+		Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+		Object recording = recordingClass.getConstructor().newInstance();
+		for(String event : new String[] { "com.anqit.lamqa.TrialAttempt", "com.anqit.lamqa.TrialChain", "com.anqit.lamqa.LazyValueEvaluation" }) {
+			Object settings = recordingClass.getMethod("enable", String.class).invoke(recording, event);
+			Class.forName("jdk.jfr.EventSettings").getMethod("withThreshold", Duration.class).invoke(settings, Duration.ZERO);
+		}
+		
+		recordingClass.getMethod("start").invoke(recording);
+		String result = TrialAndError.<String>firstTry(() -> { throw new IllegalStateException(); })
+				.orElseTry(() -> "second")
+				.named("events")
+				.run();
+		String agreed = TrialAndError.<String>firstTry(() -> { throw new IllegalStateException(); })
+				.orElseTry(() -> "agreed")
+				.orElseTry(() -> "agreed")
+				.named("quorum")
+				.inQuorum(Quorum.<String>of(2).agreeing().on(Runnable::run))
+				.run();
+		LazyValue.of(() -> "value").get();
+		recordingClass.getMethod("stop").invoke(recording);
+		
+		Path file = Files.createTempFile("lamqa", ".jfr");
+		try {
+			recordingClass.getMethod("dump", Path.class).invoke(recording, file);
+			List<?> events = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents", Path.class).invoke(null, file);
+			
+			List<String> attempts = new ArrayList<>();
+			List<String> chains = new ArrayList<>();
+			int evaluations = 0;
+			for(Object event : events) {
+				switch(eventName(event)) {
+				case "com.anqit.lamqa.TrialAttempt":
+					attempts.add(field(event, "chain") + " " + field(event, "trial") + " " + field(event, "outcome"));
+					break;
+				case "com.anqit.lamqa.TrialChain":
+					chains.add(field(event, "chain") + " " + field(event, "trial") + " " + field(event, "defaultUsed") + " " + field(event, "failed"));
+					break;
+				case "com.anqit.lamqa.LazyValueEvaluation":
+					evaluations++;
+					break;
+				}
+			}
+			
+			assertThat(result, is("second"));
+			assertThat(agreed, is("agreed"));
+			assertThat(attempts, is(Arrays.asList("events 0 failure", "events 1 success",
+					"quorum 0 failure", "quorum 1 success", "quorum 2 success")));
+			assertThat(chains, is(Arrays.asList("events 1 false false", "quorum 2 false false")));
+			assertThat(evaluations, is(1));
+		} finally {
+			recordingClass.getMethod("close").invoke(recording);
+			Files.delete(file);
+		}
+	}
+	
+	private static String eventName(Object event) throws ReflectiveOperationException {
+		Object type = Class.forName("jdk.jfr.consumer.RecordedEvent").getMethod("getEventType").invoke(event);
+		
+		return (String) Class.forName("jdk.jfr.EventType").getMethod("getName").invoke(type);
+	}
+	
+	private static Object field(Object event, String name) throws ReflectiveOperationException {
+		return Class.forName("jdk.jfr.consumer.RecordedObject").getMethod("getValue", String.class).invoke(event, name);
+	}
+	
+	private static boolean isLoadedFromJar() {
+		return MultiReleaseTest.class.getResource("/com/anqit/util/lamqa/objects/LazyValue.class").getProtocol().equals("jar");
+	}
+	
+	private static boolean isVersioned(Class<?> c) {
+		URL resource = c.getResource(c.getSimpleName() + ".class");
+		
+		return resource.toString().contains("/META-INF/versions/");
+	}
+	
+	private static boolean hasVirtualThreads() {
+		try {
+			Thread.class.getMethod("ofVirtual");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.anqit.util.lamqa.objects;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class AsyncLazyValueTest {
+	@Test
+	public void testSharedFutureWithoutBlocking() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		AsyncLazyValue<String> value = AsyncLazyValue.of(() -> {
+			calls.incrementAndGet();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			return "value";
+		});
+		
+		CompletableFuture<String> first = value.get();
+		CompletableFuture<String> second = value.get();
+		
+		assertThat(first.isDone(), is(false));
+		assertThat(value.isEvaluated(), is(false));
+		
+		release.countDown();
+		assertThat(first.get(10, TimeUnit.SECONDS), is("value"));
+		assertThat(second.get(10, TimeUnit.SECONDS), is("value"));
+		assertThat(value.isEvaluated(), is(true));
+		assertThat(value.get().getNow(null), is("value"));
+		assertThat(calls.get(), is(1));
+	}
+	
+	@Test
+	public void testFailureIsRetried() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		AsyncLazyValue<Integer> value = AsyncLazyValue.of(() -> {
+			if(calls.incrementAndGet() == 1) {
+				throw new IllegalStateException("first call fails");
+			}
+			return calls.get();
+		}, Runnable::run);
+		
+		CompletableFuture<Integer> failed = value.get();
+		try {
+			failed.get();
+			throw new AssertionError("expected the first evaluation to fail");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertThat(value.isEvaluated(), is(false));
+		
+		assertThat(value.get().get(), is(2));
+		assertThat(value.get().get(), is(2));
+		assertThat(calls.get(), is(2));
+	}
+	
+	@Test
+	public void testAsyncSupplier() throws Exception {
+		CompletableFuture<String> response = new CompletableFuture<>();
+		AsyncLazyValue<String> value = AsyncLazyValue.ofAsync(() -> response, Runnable::run);
+		
+		CompletableFuture<String> future = value.get();
+		assertThat(future.isDone(), is(false));
+		
+		response.complete("response");
+		assertThat(future.get(), is("response"));
+	}
+	
+	@Test
+	public void testRefreshSwapsFuture() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		AsyncLazyValue<Integer> value = AsyncLazyValue.of(calls::incrementAndGet, Runnable::run);
+		
+		CompletableFuture<Integer> first = value.get();
+		CompletableFuture<Integer> refreshed = value.refresh();
+		
+		assertThat(first.get(), is(1));
+		assertThat(refreshed.get(), is(2));
+		assertThat(value.get().get(), is(2));
+	}
+	
+	@Test
+	public void testCallersCannotCompleteTheSharedFuture() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AsyncLazyValue<String> value = AsyncLazyValue.of(() -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			return "value";
+		});
+		
+		CompletableFuture<String> meddling = value.get();
+		CompletableFuture<String> other = value.get();
+		assertThat(meddling, not(sameInstance(other)));
+		
+		meddling.complete("forged");
+		value.get().cancel(true);
+		
+		release.countDown();
+		assertThat(other.get(10, TimeUnit.SECONDS), is("value"));
+		assertThat(value.get().get(10, TimeUnit.SECONDS), is("value"));
+		assertThat(meddling.get(), is("forged"));
+	}
+}
@@ -0,0 +1,161 @@
+package com.anqit.util.lamqa.objects;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+public class LazyArrayTest {
+	@Test
+	public void testSlotsAreEvaluatedLazily() {
+		AtomicIntegerArray evaluations = new AtomicIntegerArray(10);
+		LazyArray<String> array = LazyArray.of(10, i -> {
+			evaluations.incrementAndGet(i);
+			return i % 3 == 0 ? null : "#" + i;
+		});
+		assertThat(array.size(), is(10));
+		assertThat(array.evaluatedCount(), is(0));
+		
+		assertThat(array.get(2), is("#2"));
+		assertThat(array.get(2), is("#2"));
+		assertThat(array.get(3), is((String) null));
+		assertThat(array.get(3), is((String) null));
+		
+		BitSet expected = new BitSet();
+		expected.set(2);
+		expected.set(3);
+		assertThat(array.evaluated(), is(expected));
+		assertThat(array.isEvaluated(2), is(true));
+		assertThat(array.isEvaluated(4), is(false));
+		assertThat(evaluations.get(2), is(1));
+		assertThat(evaluations.get(3), is(1));
+		assertThat(evaluations.get(4), is(0));
+	}
+	
+	@Test
+	public void testConcurrentGetEvaluatesOnce() throws Exception {
+		AtomicInteger evaluations = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		LazyArray<Integer> array = LazyArray.of(2, i -> {
+			if(i == 0) {
+				evaluations.incrementAndGet();
+				started.countDown();
+				try {
+					release.await();
+				} catch(InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			return i * 10;
+		});
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Integer>> results = new ArrayList<>();
+			for(int i = 0; i < 4; i++) {
+				results.add(executor.submit(() -> array.get(0)));
+			}
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+			
+			// another slot is not held up by the evaluation in progress
+			assertThat(array.get(1), is(10));
+			assertThat(array.isEvaluated(0), is(false));
+			
+			release.countDown();
+			for(Future<Integer> result : results) {
+				assertThat(result.get(10, TimeUnit.SECONDS), is(0));
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		assertThat(evaluations.get(), is(1));
+	}
+	
+	@Test
+	public void testRefreshWaitsForEvaluationInProgress() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		LazyArray<String> array = LazyArray.of(1, i -> {
+			if(calls.incrementAndGet() > 1) {
+				return "refreshed";
+			}
+			started.countDown();
+			try {
+				release.await();
+			} catch(InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			return "evaluated";
+		});
+		
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<String> evaluation = executor.submit(() -> array.get(0));
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+			Future<Boolean> refresh = executor.submit(() -> array.refresh(0));
+			
+			// the refreshed value is ready, but is not stored until the evaluation has finished
+			while(calls.get() < 2) {
+				Thread.sleep(1);
+			}
+			Thread.sleep(50);
+			assertThat(refresh.isDone(), is(false));
+			assertThat(array.isEvaluated(0), is(false));
+			
+			release.countDown();
+			assertThat(evaluation.get(10, TimeUnit.SECONDS), is("evaluated"));
+			assertThat(refresh.get(10, TimeUnit.SECONDS), is(true));
+		} finally {
+			executor.shutdown();
+		}
+		
+		// the evaluation finishing does not overwrite the refreshed value
+		assertThat(array.get(0), is("refreshed"));
+		assertThat(calls.get(), is(2));
+	}
+	
+	@Test
+	public void testSlotDependingOnItselfFails() {
+		AtomicReference<LazyArray<Integer>> self = new AtomicReference<>();
+		LazyArray<Integer> array = LazyArray.of(3, i -> i == 0 ? 1 : self.get().get(i == 2 ? 2 : 0) + 1);
+		self.set(array);
+		
+		assertThat(array.get(1), is(2));
+		try {
+			array.get(2);
+			throw new AssertionError("expected the self-dependency to be detected");
+		} catch(IllegalStateException e) {
+			assertThat(e.getMessage(), is("a LazyArray slot depends on its own value"));
+		}
+		assertThat(array.isEvaluated(2), is(false));
+	}
+	
+	@Test
+	public void testFootprint() {
+		LazyArray<Integer> array = LazyArray.of(100_000, i -> i);
+		for(int i = 0; i < array.size(); i++) {
+			array.get(i);
+		}
+		
+		// one reference per slot, however many slots are evaluated
+		assertThat(array.evaluatedCount(), is(100_000));
+		assertTrue(array.getFootprintBytes() >= 100_000 * 4L);
+		assertTrue(array.getFootprintBytes() <= 100_000 * 8L + 128);
+	}
+}
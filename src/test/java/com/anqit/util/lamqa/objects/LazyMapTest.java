@@ -0,0 +1,97 @@
+package com.anqit.util.lamqa.objects;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+public class LazyMapTest {
+	@Test
+	public void testKeysAreEvaluatedLazily() {
+		ConcurrentHashMap<String, AtomicInteger> evaluations = new ConcurrentHashMap<>();
+		LazyMap<String, Integer> map = LazyMap.of(key -> {
+			evaluations.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+			return key.isEmpty() ? null : key.length();
+		});
+		assertThat(map.evaluatedCount(), is(0));
+		assertThat(map.getFootprintBytes() > 0, is(true));
+		
+		assertThat(map.get("abc"), is(3));
+		assertThat(map.get("abc"), is(3));
+		assertThat(map.get(""), is((Integer) null));
+		assertThat(map.get(""), is((Integer) null));
+		
+		assertThat(map.evaluatedKeys(), is(new HashSet<>(Arrays.asList("abc", ""))));
+		assertThat(map.evaluatedCount(), is(2));
+		assertThat(map.isEvaluated("abc"), is(true));
+		assertThat(map.isEvaluated("other"), is(false));
+		assertThat(evaluations.get("abc").get(), is(1));
+		assertThat(evaluations.get("").get(), is(1));
+	}
+	
+	@Test
+	public void testNullValueIsKeptButFailureIsRetried() {
+		ConcurrentHashMap<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+		LazyMap<String, Integer> map = LazyMap.of(key -> {
+			int attempt = attempts.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+			if(key.equals("broken") && attempt == 1) {
+				throw new IllegalStateException();
+			}
+			return key.equals("missing") ? null : 42;
+		});
+		
+		// a null value is a value like any other
+		assertThat(map.get("missing"), is((Integer) null));
+		assertThat(map.isEvaluated("missing"), is(true));
+		assertThat(map.get("missing"), is((Integer) null));
+		assertThat(attempts.get("missing").get(), is(1));
+		
+		// a failure leaves nothing behind
+		try {
+			map.get("broken");
+			throw new AssertionError("expected the first evaluation to fail");
+		} catch(IllegalStateException e) {
+			assertThat(map.isEvaluated("broken"), is(false));
+			assertThat(map.evaluatedKeys(), is(new HashSet<>(Arrays.asList("missing"))));
+		}
+		assertThat(map.get("broken"), is(42));
+		assertThat(attempts.get("broken").get(), is(2));
+	}
+	
+	@Test
+	public void testKeysDependingOnEachOtherFail() {
+		AtomicReference<LazyMap<String, String>> self = new AtomicReference<>();
+		LazyMap<String, String> map = LazyMap.of(key -> key.equals("leaf") ? "leaf" : self.get().get(key.equals("a") ? "b" : "a"));
+		self.set(map);
+		
+		try {
+			map.get("a");
+			throw new AssertionError("expected the cycle to be detected");
+		} catch(IllegalStateException e) {
+			assertThat(e.getMessage(), is("a LazyMap value depends on its own key"));
+		}
+		assertThat(map.evaluatedCount(), is(0));
+		assertThat(map.get("leaf"), is("leaf"));
+	}
+	
+	@Test
+	public void testRefresh() {
+		AtomicInteger source = new AtomicInteger(1);
+		LazyMap<String, Integer> map = LazyMap.of(key -> source.get() * key.length());
+		assertThat(map.get("ab"), is(2));
+		
+		assertThat(map.refresh("ab"), is(false));
+		source.set(5);
+		assertThat(map.refresh("ab"), is(true));
+		assertThat(map.get("ab"), is(10));
+		
+		assertThat(map.refresh("new"), is(true));
+		assertThat(map.isEvaluated("new"), is(true));
+	}
+}
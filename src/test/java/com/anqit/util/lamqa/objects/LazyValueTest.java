@@ -1,9 +1,19 @@
 package com.anqit.util.lamqa.objects;
 
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -69,6 +79,232 @@ public class LazyValueTest {
 		assertThatGetReturns(2, lazyInt);
 	}
 	
+	@Test
+	public void testConcurrentGetEvaluatesOnce() throws Exception {
+		AtomicInteger evaluations = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		LazyValue<Integer> lazyInt = LazyValue.of(() -> {
+			evaluations.incrementAndGet();
+			return VALUE2;
+		});
+		
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> results = new ArrayList<>();
+			for(int i = 0; i < 8; i++) {
+				results.add(executor.submit(() -> {
+					start.await();
+					return lazyInt.get();
+				}));
+			}
+			start.countDown();
+			
+			for(Future<Integer> result : results) {
+				assertThat(result.get(), is(VALUE2));
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		assertThat(evaluations.get(), is(1));
+	}
+	
+	@Test
+	public void testNullValueIsCached() {
+		AtomicInteger evaluations = new AtomicInteger();
+		LazyValue<Integer> lazyNull = LazyValue.of(() -> {
+			evaluations.incrementAndGet();
+			return null;
+		});
+
+		assertThatGetReturns(null, lazyNull);
+		assertIsEvaluated(lazyNull);
+		assertThatGetReturns(null, lazyNull);
+		assertThat(evaluations.get(), is(1));
+	}
+	
+	@Test
+	public void testComposition() {
+		LazyValue<Integer> lazyInt = LazyValue.of(dynamicSupplier);
+		LazyValue<String> mapped = lazyInt.map(i -> "#" + i);
+		LazyValue<Integer> zipped = lazyInt.zip(LazyValue.of(VALUE1), Integer::sum);
+		LazyValue<Integer> flatMapped = lazyInt.flatMap(i -> LazyValue.of(i * VALUE2));
+		assertIsNotEvaluated(lazyInt);
+
+		assertThatGetReturns("#1", mapped);
+		assertThatGetReturns(1 + VALUE1, zipped);
+		assertThatGetReturns(VALUE2, flatMapped);
+		assertThat(count, is(1));
+		
+		assertSame(lazyInt, mapped.getDependencies().get(0));
+		assertThat(zipped.getDependencies().size(), is(2));
+	}
+	
+	@Test
+	public void testInvalidateRecomputesDependentsLazily() {
+		AtomicInteger root = new AtomicInteger(VALUE1);
+		AtomicInteger evaluations = new AtomicInteger();
+		LazyValue<Integer> lazyRoot = LazyValue.of(root::get);
+		LazyValue<Integer> doubled = lazyRoot.map(i -> {
+			evaluations.incrementAndGet();
+			return i * 2;
+		});
+		LazyValue<String> unrelated = LazyValue.of(() -> "unrelated");
+		
+		assertThatGetReturns(VALUE1 * 2, doubled);
+		assertThatGetReturns("unrelated", unrelated);
+		
+		root.set(VALUE2);
+		lazyRoot.invalidate();
+		assertIsNotEvaluated(lazyRoot);
+		assertIsNotEvaluated(doubled);
+		assertIsEvaluated(unrelated);
+		assertThat(evaluations.get(), is(1));
+		
+		assertThatGetReturns(VALUE2 * 2, doubled);
+		assertThat(evaluations.get(), is(2));
+		assertThatGetReturns(VALUE2 * 2, doubled);
+		assertThat(evaluations.get(), is(2));
+	}
+	
+	@Test
+	public void testInvalidateStopsAtUnchangedValues() {
+		AtomicInteger root = new AtomicInteger(2);
+		AtomicInteger parityEvaluations = new AtomicInteger();
+		AtomicInteger labelEvaluations = new AtomicInteger();
+		LazyValue<Integer> lazyRoot = LazyValue.of(root::get);
+		LazyValue<Boolean> even = lazyRoot.map(i -> {
+			parityEvaluations.incrementAndGet();
+			return i % 2 == 0;
+		});
+		LazyValue<String> label = even.map(b -> {
+			labelEvaluations.incrementAndGet();
+			return b ? "even" : "odd";
+		});
+		assertThatGetReturns("even", label);
+		
+		// the parity does not change, so the label is not recomputed
+		root.set(4);
+		lazyRoot.invalidate();
+		assertIsNotEvaluated(label);
+		assertThatGetReturns("even", label);
+		assertThat(parityEvaluations.get(), is(2));
+		assertThat(labelEvaluations.get(), is(1));
+		
+		root.set(5);
+		lazyRoot.update(root::get);
+		assertThatGetReturns("odd", label);
+		assertThat(parityEvaluations.get(), is(3));
+		assertThat(labelEvaluations.get(), is(2));
+	}
+	
+	@Test
+	public void testInvalidateDiamondDependencies() {
+		AtomicInteger root = new AtomicInteger(VALUE1);
+		AtomicInteger sumEvaluations = new AtomicInteger();
+		LazyValue<Integer> lazyRoot = LazyValue.of(root::get);
+		LazyValue<Integer> plusOne = lazyRoot.map(i -> i + 1);
+		LazyValue<Integer> constant = lazyRoot.map(i -> VALUE2);
+		LazyValue<Integer> sum = plusOne.zip(constant, (a, b) -> {
+			sumEvaluations.incrementAndGet();
+			return a + b;
+		});
+		assertThatGetReturns(VALUE1 + 1 + VALUE2, sum);
+		
+		root.set(VALUE2);
+		lazyRoot.invalidate();
+		assertThatGetReturns(VALUE2 + 1 + VALUE2, sum);
+		assertThat(sumEvaluations.get(), is(2));
+		assertIsEvaluated(constant);
+	}
+	
+	@Test
+	public void testRefreshPropagatesOnlyChanges() {
+		AtomicInteger root = new AtomicInteger(VALUE1);
+		AtomicInteger evaluations = new AtomicInteger();
+		LazyValue<Integer> lazyRoot = LazyValue.of(root::get);
+		LazyValue<Integer> declared = LazyValue.of(() -> {
+			evaluations.incrementAndGet();
+			return lazyRoot.get() * 2;
+		}).dependsOn(lazyRoot);
+		assertThatGetReturns(VALUE1 * 2, declared);
+		
+		assertFalse(lazyRoot.refresh());
+		assertIsEvaluated(declared);
+		
+		root.set(VALUE2);
+		assertTrue(lazyRoot.refresh());
+		assertIsNotEvaluated(declared);
+		assertThatGetReturns(VALUE2 * 2, declared);
+		assertThat(evaluations.get(), is(2));
+	}
+	
+	@Test
+	public void testInitializeAllRunsIndependentValuesInParallel() throws Exception {
+		CountDownLatch bothStarted = new CountDownLatch(2);
+		AtomicInteger evaluations = new AtomicInteger();
+		Supplier<Integer> awaitingSupplier = () -> {
+			evaluations.incrementAndGet();
+			bothStarted.countDown();
+			try {
+				// only completes if the other value is being evaluated at the same time
+				return bothStarted.await(10, TimeUnit.SECONDS) ? VALUE1 : -1;
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		};
+		
+		LazyValue<Integer> left = LazyValue.of(awaitingSupplier);
+		LazyValue<Integer> right = LazyValue.of(awaitingSupplier);
+		LazyValue<Integer> both = left.zip(right, Integer::sum);
+		LazyValue<Integer> doubled = both.map(i -> i * 2);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			LazyValue.initializeAll(executor, doubled, left).get(10, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdown();
+		}
+		
+		assertIsEvaluated(doubled);
+		assertThatGetReturns(4 * VALUE1, doubled);
+		assertThat(evaluations.get(), is(2));
+	}
+	
+	@Test
+	public void testRepeatedDependsOnIsIgnored() {
+		LazyValue<Integer> root = LazyValue.of(VALUE1);
+		AtomicInteger evaluations = new AtomicInteger();
+		LazyValue<Integer> dependent = LazyValue.of(() -> {
+			evaluations.incrementAndGet();
+			return root.get() + 1;
+		});
+		for(int i = 0; i < 3; i++) {
+			dependent.dependsOn(root, root);
+		}
+		
+		assertThat(dependent.getDependencies(), is(Arrays.asList(root)));
+		assertThatGetReturns(VALUE1 + 1, dependent);
+		
+		root.update(() -> VALUE2);
+		assertThatGetReturns(VALUE2 + 1, dependent);
+		assertThat(evaluations.get(), is(2));
+	}
+	
+	@Test
+	public void testInitializeAllDetectsCycles() {
+		LazyValue<Integer> first = LazyValue.of(VALUE1);
+		LazyValue<Integer> second = first.map(i -> i + 1);
+		first.dependsOn(second);
+		
+		try {
+			LazyValue.initializeAll(Runnable::run, second);
+			throw new AssertionError("expected the cycle to be detected");
+		} catch(IllegalArgumentException e) {
+			assertIsNotEvaluated(first);
+		}
+	}
+	
 	private <T> T assertThatGetReturns(T t, LazyValue<T> lazyVal) {
 		T val = lazyVal.get();
 		
@@ -0,0 +1,130 @@
+package com.anqit.util.lamqa.objects;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class MemoryBudgetTest {
+	private final MemoryBudget budget = MemoryBudget.of(100);
+	private int evaluations = 0;
+	
+	@Test
+	public void testLeastRecentlyUsedValueIsReleased() {
+		LazyValue<String> first = sized("first", 40);
+		LazyValue<String> second = sized("second", 40);
+		LazyValue<String> third = sized("third", 40);
+		
+		first.get();
+		second.get();
+		first.get();
+		assertThat(budget.getUsedBytes(), is(80L));
+		
+		third.get();
+		assertThat(second.isNotEvaluated(), is(true));
+		assertThat(first.isEvaluated(), is(true));
+		assertThat(budget.getUsedBytes(), is(80L));
+		assertThat(budget.getReleaseCount(), is(1L));
+		
+		assertThat(second.get(), is("second"));
+		assertThat(second.getReclaimCount(), is(1L));
+		assertThat(first.isNotEvaluated(), is(true));
+		assertThat(evaluations, is(4));
+	}
+	
+	@Test
+	public void testValueLargerThanTheBudgetIsKept() {
+		LazyValue<String> small = sized("small", 10);
+		LazyValue<String> huge = sized("huge", 1000);
+		
+		small.get();
+		huge.get();
+		
+		assertThat(small.isNotEvaluated(), is(true));
+		assertThat(huge.isEvaluated(), is(true));
+		assertThat(budget.getUsedBytes(), is(1000L));
+	}
+	
+	@Test
+	public void testConcurrentRefreshesKeepTheBudgetAccurate() throws Exception {
+		MemoryBudget small = MemoryBudget.of(30);
+		List<LazyValue<Integer>> values = new ArrayList<>();
+		for(int i = 0; i < 8; i++) {
+			int value = i;
+			values.add(small.lazyValue(() -> value, v -> 10));
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> workers = new ArrayList<>();
+			for(int t = 0; t < 4; t++) {
+				workers.add(executor.submit(() -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					for(int i = 0; i < 20_000; i++) {
+						LazyValue<Integer> value = values.get(random.nextInt(values.size()));
+						if(random.nextBoolean()) {
+							value.get();
+						} else {
+							value.refresh();
+						}
+					}
+				}));
+			}
+			for(Future<?> worker : workers) {
+				worker.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		// every counted byte belongs to a value that is still held
+		long held = values.stream().filter(LazyValue::isEvaluated).count() * 10;
+		assertThat(small.getUsedBytes(), is(held));
+	}
+	
+	@Test
+	public void testUpdateLeavesTheBudget() {
+		LazyValue<String> value = sized("value", 60);
+		value.get();
+		
+		value.update(() -> "updated");
+		assertThat(budget.getUsedBytes(), is(0L));
+		assertThat(value.get(), is("updated"));
+		assertThat(budget.getUsedBytes(), is(60L));
+		assertThat(value.getReclaimCount(), is(0L));
+	}
+	
+	@Test
+	public void testWeaklyHeldValueIsRecomputedAfterGc() throws InterruptedException {
+		LazyValue<Object> weak = LazyValue.weakly(() -> {
+			evaluations++;
+			return new byte[1024];
+		});
+		weak.get();
+		
+		for(int i = 0; i < 50 && weak.isEvaluated(); i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertThat(weak.isNotEvaluated(), is(true));
+		
+		weak.get();
+		assertThat(evaluations, is(2));
+		assertThat(weak.getReclaimCount(), is(1L));
+	}
+	
+	private LazyValue<String> sized(String value, long size) {
+		return budget.lazyValue(() -> {
+			evaluations++;
+			return value;
+		}, v -> size);
+	}
+}
@@ -0,0 +1,148 @@
+package com.anqit.util.lamqa.objects;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PersistentSupplierTest {
+	private static final ValueSerializer<String> UTF_8 = new ValueSerializer<String>() {
+		@Override
+		public ByteBuffer serialize(String value) {
+			return StandardCharsets.UTF_8.encode(value);
+		}
+
+		@Override
+		public String deserialize(ByteBuffer bytes) {
+			return StandardCharsets.UTF_8.decode(bytes).toString();
+		}
+	};
+	
+	private Path directory;
+	private Path file;
+	private int count = 0;
+	private final List<Exception> errors = new ArrayList<>();
+	private final Supplier<String> expensiveSupplier = () -> "rules v" + ++count;
+	
+	@BeforeEach
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("lamqa");
+		file = directory.resolve("rules.bin");
+	}
+	
+	@AfterEach
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+		Files.delete(directory);
+	}
+	
+	@Test
+	public void testValueSurvivesRestart() {
+		assertThat(persistent("v1").get(), is("rules v1"));
+		assertThat(persistent("v1").get(), is("rules v1"));
+		assertThat(count, is(1));
+		// a missing file is just the first run
+		assertThat(errors.isEmpty(), is(true));
+	}
+	
+	@Test
+	public void testFingerprintMismatchRecomputes() {
+		assertThat(persistent("v1").get(), is("rules v1"));
+		assertThat(persistent("v2").get(), is("rules v2"));
+		assertThat(persistent("v2").get(), is("rules v2"));
+		assertThat(count, is(2));
+	}
+	
+	@Test
+	public void testCorruptFileIsIgnored() throws IOException {
+		persistent("v1").get();
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 'X' }), channel.size() - 1);
+		}
+		errors.clear();
+		
+		assertThat(persistent("v1").get(), is("rules v2"));
+		assertThat(errors.size(), is(1));
+		assertThat(persistent("v1").get(), is("rules v2"));
+	}
+	
+	@Test
+	public void testTruncatedFileIsIgnored() throws IOException {
+		persistent("v1").get();
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 3);
+		}
+		
+		assertThat(persistent("v1").get(), is("rules v2"));
+		assertThat(count, is(2));
+	}
+	
+	@Test
+	public void testSerializerFailureDoesNotFailGet() {
+		ValueSerializer<String> failing = new ValueSerializer<String>() {
+			@Override
+			public ByteBuffer serialize(String value) {
+				throw new IllegalArgumentException("cannot serialize " + value);
+			}
+			
+			@Override
+			public String deserialize(ByteBuffer bytes) throws IOException {
+				return UTF_8.deserialize(bytes);
+			}
+		};
+		
+		assertThat(PersistentSupplier.of(file, "v1", failing, expensiveSupplier).onError(errors::add).get(), is("rules v1"));
+		assertThat(errors.size(), is(1));
+		assertThat(errors.get(0).getCause().getMessage(), is("cannot serialize rules v1"));
+		assertThat(Files.exists(file), is(false));
+	}
+	
+	@Test
+	public void testSupplierFailureReachesTheCaller() {
+		LazyValue<String> value = LazyValue.persistent(file, "v1", UTF_8, () -> {
+			if(++count == 1) {
+				throw new IllegalStateException("rules unavailable");
+			}
+			return "rules v" + count;
+		});
+		
+		try {
+			value.get();
+			throw new AssertionError("expected the supplier's exception");
+		} catch(IllegalStateException e) {
+			assertThat(e.getMessage(), is("rules unavailable"));
+		}
+		assertThat(value.isEvaluated(), is(false));
+		assertThat(Files.exists(file), is(false));
+		
+		assertThat(value.get(), is("rules v2"));
+		assertThat(persistent("v1").get(), is("rules v2"));
+	}
+	
+	@Test
+	public void testJavaSerialization() {
+		ValueSerializer<ArrayList<Integer>> serializer = ValueSerializer.serializable();
+		ArrayList<Integer> value = new ArrayList<>();
+		value.add(13);
+		
+		assertThat(LazyValue.persistent(file, "v1", serializer, () -> value).get(), is(value));
+		assertThat(LazyValue.persistent(file, "v1", serializer, ArrayList<Integer>::new).get(), is(value));
+	}
+	
+	private LazyValue<String> persistent(String fingerprint) {
+		return LazyValue.of(PersistentSupplier.of(file, fingerprint, UTF_8, expensiveSupplier).onError(errors::add));
+	}
+}
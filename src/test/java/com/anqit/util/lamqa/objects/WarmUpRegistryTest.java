@@ -0,0 +1,94 @@
+package com.anqit.util.lamqa.objects;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class WarmUpRegistryTest {
+	private final WarmUpRegistry registry = new WarmUpRegistry();
+	private final List<String> evaluated = new ArrayList<>();
+	
+	@Test
+	public void testWarmsUpInPriorityOrder() throws Exception {
+		registry.enroll(named("low"), 1);
+		registry.enroll(named("high"), 10);
+		registry.enroll(named("also low"), 1);
+		assertFalse(registry.isWarm());
+		
+		registry.warmUp(Runnable::run, Duration.ofMinutes(1)).get();
+		
+		assertThat(evaluated, is(Arrays.asList("high", "low", "also low")));
+		assertTrue(registry.isWarm());
+	}
+	
+	@Test
+	public void testGetWaitsForWarmUp() throws Exception {
+		CountDownLatch warming = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger evaluations = new AtomicInteger();
+		LazyValue<Integer> slow = registry.enroll(LazyValue.of(() -> {
+			evaluations.incrementAndGet();
+			warming.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			return 42;
+		}), 0);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			CompletableFuture<Void> ready = registry.warmUp(executor, Duration.ofMinutes(1));
+			assertTrue(warming.await(10, TimeUnit.SECONDS));
+			
+			CompletableFuture<Integer> request = CompletableFuture.supplyAsync(slow::get, executor);
+			release.countDown();
+			
+			assertThat(request.get(10, TimeUnit.SECONDS), is(42));
+			ready.get(10, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdown();
+		}
+		
+		assertThat(evaluations.get(), is(1));
+	}
+	
+	@Test
+	public void testBudgetRunsOut() throws InterruptedException {
+		registry.enroll(named("first"), 2);
+		registry.enroll(named("second"), 1);
+		
+		try {
+			registry.warmUp(Runnable::run, Duration.ZERO).get();
+			throw new AssertionError("expected the budget to run out");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(TimeoutException.class));
+		}
+		assertFalse(registry.isWarm());
+	}
+	
+	private LazyValue<String> named(String name) {
+		return LazyValue.of(() -> {
+			evaluated.add(name);
+			return name;
+		});
+	}
+}
@@ -0,0 +1,68 @@
+package com.anqit.util.lamqa.trials;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.anqit.util.lamqa.trials.TrialAndError.FunctionalTrialAndError;
+
+public class ConcurrencyLimitTest {
+	@Test
+	public void testTrialOverItsLimitIsSkipped() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ConcurrencyLimit limit = ConcurrencyLimit.aimd(1);
+		FunctionalTrialAndError<String, String> lookup = TrialAndError.<String, String>firstTry(key -> {
+					started.countDown();
+					release.await();
+					return "backend " + key;
+				}, (e, key) -> {
+					throw new AssertionError("a skipped trial should not be handled");
+				})
+				.limitedBy(limit)
+				.ifAllElseFails("default");
+		
+		CompletableFuture<String> slowCall = CompletableFuture.supplyAsync(() -> lookup.on("a"));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		assertThat(limit.getInFlight(), is(1));
+		
+		assertThat(lookup.on("b"), is("default"));
+		assertThat(limit.getSkipCount(), is(1L));
+		
+		release.countDown();
+		assertThat(slowCall.get(10, TimeUnit.SECONDS), is("backend a"));
+		assertThat(limit.getInFlight(), is(0));
+	}
+	
+	@Test
+	public void testLimitAdaptsToLatencyAndFailures() throws Exception {
+		ConcurrencyLimit limit = ConcurrencyLimit.aimd(2).between(1, 3).latencyThreshold(1, TimeUnit.HOURS);
+		
+		assertTrue(limit.tryAcquire());
+		limit.release(0, false);
+		assertThat(limit.getLimit(), is(3));
+		assertTrue(limit.tryAcquire());
+		limit.release(0, false);
+		assertThat(limit.getLimit(), is(3));
+		
+		assertTrue(limit.tryAcquire());
+		limit.release(TimeUnit.HOURS.toNanos(2), false);
+		assertThat(limit.getLimit(), is(2));
+		
+		limit.backoff(0.5);
+		assertTrue(limit.tryAcquire());
+		limit.release(0, true);
+		assertThat(limit.getLimit(), is(1));
+		
+		limit.ignoringFailures();
+		assertTrue(limit.tryAcquire());
+		limit.release(0, true);
+		assertThat(limit.getLimit(), is(1));
+	}
+}
@@ -0,0 +1,155 @@
+package com.anqit.util.lamqa.trials;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.anqit.util.lamqa.concurrent.TaskExecutors;
+import com.anqit.util.lamqa.function.ThrowingFunction;
+import com.anqit.util.lamqa.trials.TrialAndError.FunctionalTrialAndError;
+import com.anqit.util.lamqa.trials.TrialAndError.NoArgTrialAndError;
+
+public class QuorumTest {
+	private final CountDownLatch stragglerStarted = new CountDownLatch(1);
+	private final CountDownLatch stragglerInterrupted = new CountDownLatch(1);
+	
+	private final ThrowingFunction<String, String> straggler = key -> {
+		stragglerStarted.countDown();
+		try {
+			Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+		} catch (InterruptedException e) {
+			stragglerInterrupted.countDown();
+			throw e;
+		}
+		return "late " + key;
+	};
+	// the tasks started by the quorum, in the order of the functions in the chain
+	private final List<Future<?>> tasks = new CopyOnWriteArrayList<>();
+	
+	/**
+	 * An executor that records the tasks it runs, and only returns from running the straggler's task once the
+	 * straggler has started, so that the quorum cannot finish before there is a running straggler to interrupt
+	 */
+	private Executor recording(int stragglerIndex) {
+		return task -> {
+			tasks.add((Future<?>) task);
+			TaskExecutors.defaultExecutor().execute(task);
+			if(tasks.size() - 1 == stragglerIndex) {
+				try {
+					assertTrue(stragglerStarted.await(10, TimeUnit.SECONDS));
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+	}
+
+	@Test
+	public void testAgreeingReplicas() throws InterruptedException {
+		FunctionalTrialAndError<String, String> replicas = TrialAndError.<String, String>firstTry(key -> "stale " + key)
+				.orElseTry(straggler)
+				.orElseTry(key -> "fresh " + key)
+				.orElseTry(key -> "fresh " + key)
+				.inQuorum(Quorum.<String>of(2).agreeing().on(recording(1)));
+
+		assertThat(replicas.on("k"), is("fresh k"));
+		assertStragglerCancelled(1);
+	}
+	
+	@Test
+	public void testFirstSuccessesAreMerged() {
+		NoArgTrialAndError<Integer> sum = TrialAndError.firstTry(() -> 1)
+				.orElseTry(() -> 2)
+				.orElseTry(() -> {
+					throw new IllegalStateException();
+				})
+				.inQuorum(Quorum.<Integer>of(2).merging(results -> results.stream().mapToInt(i -> i).sum()));
+		
+		assertThat(sum.run(), is(3));
+	}
+	
+	@Test
+	public void testUnreachableQuorumFallsBackToDefault() {
+		List<String> failures = new CopyOnWriteArrayList<>();
+		FunctionalTrialAndError<String, String> replicas = TrialAndError.<String, String>firstTry(key -> "a", 
+					(e, key) -> failures.add(e.getMessage()))
+				.orElseTry(key -> {
+					throw new IllegalStateException("down");
+				}, (e, key) -> failures.add(e.getMessage()))
+				.orElseTry(key -> "b")
+				.ifAllElseFails("default")
+				.inQuorum(Quorum.<String>of(2).agreeing());
+
+		assertThat(replicas.on("k"), is("default"));
+		assertThat(failures.size(), is(1));
+		assertThat(failures.get(0), is("down"));
+	}
+	
+	@Test
+	public void testTimeoutFallsBackToDefault() throws InterruptedException {
+		FunctionalTrialAndError<String, String> replicas = TrialAndError.<String, String>firstTry(key -> "fast " + key)
+				.orElseTry(straggler)
+				.ifAllElseFails("default")
+				.inQuorum(Quorum.<String>of(2).within(50, TimeUnit.MILLISECONDS).on(recording(1)));
+
+		assertThat(replicas.on("k"), is("default"));
+		assertStragglerCancelled(1);
+	}
+	
+	@Test
+	public void testRejectedTaskCancelsStartedOnes() throws InterruptedException {
+		FunctionalTrialAndError<String, String> replicas = TrialAndError.<String, String>firstTry(straggler)
+				.orElseTry(key -> "never started")
+				.inQuorum(Quorum.<String>of(1).on(task -> {
+					if(tasks.isEmpty()) {
+						recording(0).execute(task);
+					} else {
+						throw new RejectedExecutionException("full");
+					}
+				}));
+		
+		try {
+			replicas.on("k");
+			throw new AssertionError("expected the rejection to propagate");
+		} catch(RejectedExecutionException e) {
+			assertThat(e.getMessage(), is("full"));
+		}
+		assertStragglerCancelled(0);
+	}
+	
+	@Test
+	public void testErrorsAndThrowingHandlersStillCount() throws Exception {
+		NoArgTrialAndError<String> replicas = TrialAndError.<String>firstTry(() -> {
+			throw new AssertionError("broken");
+		})
+				.orElseTry(() -> {
+					throw new IllegalStateException("down");
+				}, e -> {
+					throw new IllegalArgumentException("handler failed");
+				})
+				.ifAllElseFails("default")
+				.inQuorum(Quorum.<String>of(1));
+		
+		// both attempts report a failure, so the quorum is known to be unreachable without any timeout
+		assertThat(CompletableFuture.supplyAsync(replicas::run).get(10, TimeUnit.SECONDS), is("default"));
+	}
+	
+	/**
+	 * The straggler's task, which had started running, must have been cancelled and interrupted
+	 */
+	private void assertStragglerCancelled(int index) throws InterruptedException {
+		assertTrue(tasks.get(index).isCancelled());
+		assertTrue(stragglerInterrupted.await(10, TimeUnit.SECONDS));
+	}
+}
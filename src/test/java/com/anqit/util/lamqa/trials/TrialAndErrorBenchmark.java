@@ -0,0 +1,106 @@
+package com.anqit.util.lamqa.trials;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.anqit.util.lamqa.function.ThrowingFunction;
+import com.anqit.util.lamqa.trials.TrialAndError.FunctionalTrialAndError;
+import com.anqit.util.lamqa.trials.exception.TrialFailedException;
+
+/**
+ * Compares an interpreted {@link FunctionalTrialAndError} with its {@link FunctionalTrialAndError#compile() compiled}
+ * form. {@code failures} is the number of functions that throw before one succeeds.
+ * <p>
+ * The compiled form is measured twice: {@code compiled} calls it through an instance field, as a caller holding it in
+ * an object would, and {@code compiledConstant} through a {@code static final} field, which the JIT treats as a
+ * constant and can inline through. All three appear side by side in the report for each number of failures.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test 
+ * -Dexec.mainClass=com.anqit.util.lamqa.trials.TrialAndErrorBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrialAndErrorBenchmark {
+	private static final Exception FAILURE = new TrialFailedException("failed");
+	private static final ThrowingFunction<Integer, Integer> COMPILED_0 = chain(0).compile();
+	private static final ThrowingFunction<Integer, Integer> COMPILED_1 = chain(1).compile();
+	private static final ThrowingFunction<Integer, Integer> COMPILED_3 = chain(3).compile();
+	
+	@Param({ "0", "1", "3" })
+	int failures;
+	
+	int input = 17;
+	FunctionalTrialAndError<Integer, Integer> interpreted;
+	ThrowingFunction<Integer, Integer> compiled;
+	
+	@Setup
+	public void setUp() {
+		interpreted = chain(failures);
+		compiled = interpreted.compile();
+	}
+	
+	private static FunctionalTrialAndError<Integer, Integer> chain(int failures) {
+		FunctionalTrialAndError<Integer, Integer> chain = TrialAndError.firstTry(attempt(0, failures));
+		for(int i = 1; i <= failures; i++) {
+			chain.orElseTry(attempt(i, failures));
+		}
+		
+		return chain.ifAllElseFails(-1);
+	}
+	
+	private static ThrowingFunction<Integer, Integer> attempt(int index, int failures) {
+		return i -> {
+			if(index < failures) {
+				throw FAILURE;
+			}
+			return i + index;
+		};
+	}
+	
+	@Benchmark
+	public Integer interpreted() {
+		return interpreted.on(input);
+	}
+	
+	@Benchmark
+	public Integer compiled() throws Exception {
+		return compiled.applyThrows(input);
+	}
+	
+	@Benchmark
+	public Integer compiledConstant() throws Exception {
+		// one call site per constant, so each stays monomorphic
+		switch(failures) {
+		case 0:
+			return COMPILED_0.applyThrows(input);
+		case 1:
+			return COMPILED_1.applyThrows(input);
+		case 3:
+			return COMPILED_3.applyThrows(input);
+		default:
+			throw new IllegalStateException("no constant chain with " + failures + " failures");
+		}
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(TrialAndErrorBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -1,12 +1,23 @@
 package com.anqit.util.lamqa.trials;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.function.Supplier;
 
 import org.junit.jupiter.api.Test;
 
 import com.anqit.util.lamqa.function.ThrowingBiFunction;
+import com.anqit.util.lamqa.function.ThrowingFunction;
+import com.anqit.util.lamqa.function.ThrowingVarFunction;
 import com.anqit.util.lamqa.trials.TrialAndError.BiFunctionalTrialAndError;
+import com.anqit.util.lamqa.trials.TrialAndError.QuadFunctionalTrialAndError;
+import com.anqit.util.lamqa.trials.TrialAndError.TriFunctionalTrialAndError;
+import com.anqit.util.lamqa.trials.TrialAndError.VarFunctionalTrialAndError;
 
 public class TrialAndErrorTest {
 	int[][] divisionTests = { { 4, 2 }, { 2, 4 }, { -5, 2 }, { 3, -2 }, { 0, 2 }, { 2, 0 } };
@@ -40,6 +51,147 @@ public class TrialAndErrorTest {
 		runTheDivisionTests();
 	}
 
+	@Test
+	public void testTriFunctionalFallsThrough() {
+		List<String> failures = new ArrayList<>();
+		TriFunctionalTrialAndError<String, String, String, String> lookup = TrialAndError
+				.<String, String, String, String>firstTry((tenant, region, key) -> {
+					throw new IllegalStateException(region + " is down");
+				}, (e, tenant, region, key) -> failures.add(e.getMessage()))
+				.orElseTry((tenant, region, key) -> String.join("/", tenant, "fallback", key));
+
+		assertThat(lookup.on("acme", "us-east", "k"), is("acme/fallback/k"));
+		assertThat(failures, is(Arrays.asList("us-east is down")));
+	}
+
+	@Test
+	public void testQuadFunctionalDefault() {
+		QuadFunctionalTrialAndError<Integer, Integer, Integer, Integer, Integer> quotient = TrialAndError
+				.<Integer, Integer, Integer, Integer, Integer>firstTry((a, b, c, d) -> (a + b) / (c + d))
+				.ifAllElseFails(-1);
+
+		assertThat(quotient.on(4, 2, 1, 2), is(2));
+		assertThat(quotient.on(4, 2, 1, -1), is(-1));
+	}
+
+	@Test
+	public void testVarFunctionalReusesArguments() {
+		List<Object[]> seen = new ArrayList<>();
+		VarFunctionalTrialAndError<Integer> sum = TrialAndError.firstTryVarArgs(new ThrowingVarFunction<Integer>() {
+			@Override
+			@SafeVarargs
+			public final <T> Integer apply(T... objects) throws Exception {
+				seen.add(objects);
+				int total = 0;
+				for(T o : objects) {
+					total += (Integer) o;
+				}
+				return total;
+			}
+		});
+
+		assertThat(sum.arguments(3).with(1).with(2).with(3).run(), is(6));
+		assertThat(sum.arguments(3).with(4).with(5).with(6).run(), is(15));
+		assertThat(seen.get(0) == seen.get(1), is(true));
+		assertThat(seen.get(0)[0], is(nullValue()));
+
+		Object[] args = { 7, 8 };
+		assertThat(sum.on(args), is(15));
+		assertThat(seen.get(2) == args, is(true));
+	}
+
+	@Test
+	public void testVarFunctionalBuffersAreSharedAcrossTrials() {
+		VarFunctionalTrialAndError<String> first = TrialAndError.firstTryVarArgs(new ThrowingVarFunction<String>() {
+			@Override
+			@SafeVarargs
+			public final <T> String apply(T... objects) throws Exception {
+				return "first " + objects[0];
+			}
+		});
+		VarFunctionalTrialAndError<String> second = TrialAndError.firstTryVarArgs(new ThrowingVarFunction<String>() {
+			@Override
+			@SafeVarargs
+			public final <T> String apply(T... objects) throws Exception {
+				return "second " + objects[0];
+			}
+		});
+
+		// a buffer handed out to one trial is not handed to another until it has been run
+		VarFunctionalTrialAndError.Arguments<String> pending = first.arguments(1).with("a");
+		assertThat(second.arguments(1).with("b").run(), is("second b"));
+		assertThat(pending.run(), is("first a"));
+		assertThat(second.arguments(1).with("c").run(), is("second c"));
+	}
+
+	@Test
+	public void testAbandonedVarFunctionalBufferIsNotReused() {
+		VarFunctionalTrialAndError<String> echo = TrialAndError.firstTryVarArgs(new ThrowingVarFunction<String>() {
+			@Override
+			@SafeVarargs
+			public final <T> String apply(T... objects) throws Exception {
+				return "echo " + objects[0];
+			}
+		});
+
+		// neither buffer is ever run: one is abandoned, the other overfilled
+		echo.arguments(1).with("abandoned");
+		VarFunctionalTrialAndError.Arguments<String> overfilled = echo.arguments(1).with("a");
+		try {
+			overfilled.with("b");
+			throw new AssertionError("expected the buffer to be full");
+		} catch(IllegalStateException expected) {
+		}
+
+		// buffers are reused again once one has been run
+		VarFunctionalTrialAndError.Arguments<String> buffer = echo.arguments(1);
+		assertThat(buffer.with("x").run(), is("echo x"));
+		assertThat(echo.arguments(1) == buffer, is(true));
+		assertThat(buffer.with("y").run(), is("echo y"));
+
+		// an incomplete buffer is handed back as well
+		VarFunctionalTrialAndError.Arguments<String> incomplete = echo.arguments(1);
+		try {
+			incomplete.run();
+			throw new AssertionError("expected the missing argument to be reported");
+		} catch(IllegalStateException expected) {
+		}
+		assertThat(echo.arguments(1) == incomplete, is(true));
+	}
+
+	@Test
+	public void testCompiledMatchesInterpreted() throws Exception {
+		List<String> handled = new ArrayList<>();
+		divisionTrier = TrialAndError.firstTry(toDivideTheArgs, (e, t, u) -> handled.add(t + "/" + u))
+				.orElseTry((t, u) -> {
+					TrialAndError.failTrial("no luck");
+					return null;
+				})
+				.ifAllElseFails(justReturnZero);
+		ThrowingBiFunction<Integer, Integer, Number> compiled = divisionTrier.compile();
+
+		for(int[] pair : divisionTests) {
+			assertThat(compiled.applyThrows(pair[0], pair[1]), is(divisionTrier.on(pair[0], pair[1])));
+		}
+		assertThat(handled, is(Arrays.asList("2/0", "2/0")));
+	}
+
+	@Test
+	public void testCompiledPropagatesDefaultFailure() {
+		ThrowingFunction<String, Integer> parse = TrialAndError.<String, Integer>firstTry(Integer::parseInt)
+				.ifAllElseFails(() -> {
+					throw new IllegalArgumentException("unparseable");
+				})
+				.compile();
+
+		try {
+			parse.applyThrows("nope");
+			throw new AssertionError("expected the default supplier's exception");
+		} catch(Exception e) {
+			assertThat(e.getMessage(), is("unparseable"));
+		}
+	}
+
 	private void runTheDivisionTests() {
 		Arrays.asList(divisionTests).stream().forEach(pair -> {
 			int t = pair[0], u = pair[1];
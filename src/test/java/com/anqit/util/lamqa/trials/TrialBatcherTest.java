@@ -0,0 +1,222 @@
+package com.anqit.util.lamqa.trials;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+public class TrialBatcherTest {
+	// the threads started by the executor below, and what they did not catch
+	private final List<Thread> threads = new CopyOnWriteArrayList<>();
+	private final List<Throwable> uncaught = new CopyOnWriteArrayList<>();
+	private final Executor newThreads = task -> {
+		Thread thread = new Thread(task);
+		thread.setUncaughtExceptionHandler((t, e) -> uncaught.add(e));
+		threads.add(thread);
+		thread.start();
+	};
+
+	@Test
+	public void testCoalescesConcurrentLoads() throws Exception {
+		List<Set<Integer>> batches = new CopyOnWriteArrayList<>();
+		TrialBatcher<Integer, String> batcher = TrialBatcher.<Integer, String>of(keys -> {
+			batches.add(new HashSet<>(keys));
+			Map<Integer, String> found = new HashMap<>();
+			keys.forEach(k -> found.put(k, "bulk " + k));
+			return found;
+		}, TrialAndError.firstTry(k -> "single " + k))
+				.within(500, TimeUnit.MILLISECONDS);
+
+		ExecutorService callers = Executors.newFixedThreadPool(10);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for(int i = 0; i < 10; i++) {
+				int key = i % 5;
+				results.add(callers.submit(() -> batcher.load(key)));
+			}
+			for(int i = 0; i < 10; i++) {
+				assertThat(results.get(i).get(10, TimeUnit.SECONDS), is("bulk " + (i % 5)));
+			}
+		} finally {
+			callers.shutdown();
+		}
+
+		assertThat(batches.size(), is(1));
+		assertThat(batches.get(0), is(new HashSet<>(Arrays.asList(0, 1, 2, 3, 4))));
+	}
+
+	@Test
+	public void testFullBatchIsSentWithoutWaiting() throws Exception {
+		AtomicInteger bulkCalls = new AtomicInteger();
+		TrialBatcher<Integer, Integer> batcher = TrialBatcher.<Integer, Integer>of(keys -> {
+			bulkCalls.incrementAndGet();
+			Map<Integer, Integer> found = new HashMap<>();
+			keys.forEach(k -> found.put(k, k * 2));
+			return found;
+		}, k -> -1)
+				.within(1, TimeUnit.MINUTES)
+				.maxBatchSize(3);
+
+		long start = System.nanoTime();
+		CompletableFuture<Integer> first = batcher.loadAsync(1);
+		CompletableFuture<Integer> duplicate = batcher.loadAsync(1);
+		CompletableFuture<Integer> second = batcher.loadAsync(2);
+		CompletableFuture<Integer> third = batcher.loadAsync(3);
+
+		assertThat(third.get(10, TimeUnit.SECONDS), is(6));
+		assertThat(first.get(), is(2));
+		assertThat(duplicate.get(), is(2));
+		assertThat(second.get(), is(4));
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+		assertThat(bulkCalls.get(), is(1));
+	}
+
+	@Test
+	public void testMissesGoThroughTheRestOfTheChain() throws Exception {
+		TrialBatcher<Integer, String> batcher = TrialBatcher.<Integer, String>of(keys -> {
+			Map<Integer, String> found = new HashMap<>();
+			keys.stream().filter(k -> k % 2 == 0).forEach(k -> found.put(k, "bulk " + k));
+			return found;
+		}, TrialAndError.<Integer, String>firstTry(k -> {
+			if(k == 3) {
+				throw new IllegalStateException();
+			}
+			return "single " + k;
+		})
+		.orElseTry(k -> "fallback " + k))
+				.within(50, TimeUnit.MILLISECONDS)
+				.maxBatchSize(4);
+
+		List<CompletableFuture<String>> results = new ArrayList<>();
+		for(int i = 0; i < 4; i++) {
+			results.add(batcher.loadAsync(i));
+		}
+
+		assertThat(results.get(0).get(10, TimeUnit.SECONDS), is("bulk 0"));
+		assertThat(results.get(1).get(10, TimeUnit.SECONDS), is("single 1"));
+		assertThat(results.get(2).get(10, TimeUnit.SECONDS), is("bulk 2"));
+		assertThat(results.get(3).get(10, TimeUnit.SECONDS), is("fallback 3"));
+	}
+
+	@Test
+	public void testBulkFailureFallsBackForEveryKey() {
+		AtomicReference<Set<Integer>> failedKeys = new AtomicReference<>();
+		TrialBatcher<Integer, String> batcher = TrialBatcher.<Integer, String>of(keys -> {
+			throw new IllegalStateException();
+		}, k -> {
+			if(k < 0) {
+				throw new IllegalArgumentException("negative key");
+			}
+			return "single " + k;
+		})
+				.handlingFailuresWith((e, keys) -> failedKeys.set(keys))
+				.within(0, TimeUnit.MILLISECONDS);
+
+		assertThat(batcher.load(7), is("single 7"));
+		assertThat(failedKeys.get(), is(new HashSet<>(Arrays.asList(7))));
+
+		try {
+			batcher.load(-1);
+			throw new AssertionError("expected the rest of the chain to fail");
+		} catch(IllegalArgumentException e) {
+			assertThat(e.getMessage(), is("negative key"));
+		}
+	}
+
+	@Test
+	public void testRejectedMissesRunOnTheDispatchingThread() throws Exception {
+		AtomicInteger executions = new AtomicInteger();
+		Executor firstTaskOnly = task -> {
+			// runs the batch, then rejects the rest of the chain
+			if(executions.getAndIncrement() > 0) {
+				throw new RejectedExecutionException("saturated");
+			}
+			new Thread(task).start();
+		};
+		TrialBatcher<Integer, String> batcher = TrialBatcher.<Integer, String>of(keys -> {
+			Map<Integer, String> found = new HashMap<>();
+			found.put(0, "bulk 0");
+			return found;
+		}, k -> "single " + k)
+				.on(firstTaskOnly)
+				.maxBatchSize(2);
+
+		CompletableFuture<String> hit = batcher.loadAsync(0);
+		CompletableFuture<String> miss = batcher.loadAsync(1);
+
+		assertThat(hit.get(10, TimeUnit.SECONDS), is("bulk 0"));
+		assertThat(miss.get(10, TimeUnit.SECONDS), is("single 1"));
+	}
+
+	@Test
+	public void testThrowingFailureHandlerCompletesTheBatch() throws Exception {
+		TrialBatcher<Integer, String> batcher = TrialBatcher.<Integer, String>of(keys -> {
+			throw new IllegalStateException("bulk failed");
+		}, k -> "single " + k)
+				.handlingFailuresWith((e, keys) -> {
+					throw new UnsupportedOperationException("handler failed");
+				})
+				.on(newThreads)
+				.maxBatchSize(2);
+
+		CompletableFuture<String> first = batcher.loadAsync(0);
+		CompletableFuture<String> second = batcher.loadAsync(1);
+
+		for(CompletableFuture<String> result : Arrays.asList(first, second)) {
+			try {
+				result.get(10, TimeUnit.SECONDS);
+				throw new AssertionError("expected the batch to fail");
+			} catch(ExecutionException e) {
+				assertThat(e.getCause().getMessage(), is("handler failed"));
+			}
+		}
+		// the exception reaches the callers only, not the executor's thread as well
+		joinThreads();
+		assertThat(uncaught.isEmpty(), is(true));
+	}
+
+	@Test
+	public void testBulkErrorCompletesTheBatch() throws Exception {
+		TrialBatcher<Integer, String> batcher = TrialBatcher.<Integer, String>of(keys -> {
+			throw new AssertionError("bulk error");
+		}, k -> "single " + k)
+				.on(newThreads)
+				.maxBatchSize(1);
+
+		try {
+			batcher.loadAsync(0).get(10, TimeUnit.SECONDS);
+			throw new IllegalStateException("expected the batch to fail");
+		} catch(ExecutionException e) {
+			assertThat(e.getCause().getMessage(), is("bulk error"));
+		}
+		joinThreads();
+		assertThat(uncaught.size(), is(1));
+		assertThat(uncaught.get(0).getMessage(), is("bulk error"));
+	}
+
+	private void joinThreads() throws InterruptedException {
+		for(Thread thread : threads) {
+			thread.join(TimeUnit.SECONDS.toMillis(10));
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package com.anqit.util.lamqa.trials;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.anqit.util.lamqa.trials.TrialAndError.NoArgTrialAndError;
+
+public class TrialHealthTest {
+	private Path file;
+	
+	@BeforeEach
+	public void createFile() throws IOException {
+		file = Files.createTempFile("lamqa", ".health");
+	}
+	
+	@AfterEach
+	public void deleteFile() throws IOException {
+		Files.deleteIfExists(file);
+	}
+	
+	@Test
+	public void testFailuresAreShared() throws IOException {
+		TrialHealth first = TrialHealth.open(file).failureThreshold(3);
+		TrialHealth second = TrialHealth.open(file).failureThreshold(3);
+		
+		AtomicInteger firstCalls = new AtomicInteger(), secondCalls = new AtomicInteger();
+		NoArgTrialAndError<String> firstChain = failingChain(first, firstCalls);
+		NoArgTrialAndError<String> secondChain = failingChain(second, secondCalls);
+		
+		for(int i = 0; i < 3; i++) {
+			assertThat(firstChain.run(), is("fallback"));
+		}
+		assertThat(firstCalls.get(), is(3));
+		assertThat(second.isOpen("backend"), is(true));
+		assertThat(second.getFailureCount("backend"), is(3L));
+		assertTrue(second.getLastFailure("backend") > 0);
+		
+		assertThat(secondChain.run(), is("fallback"));
+		assertThat(secondCalls.get(), is(0));
+	}
+	
+	@Test
+	public void testFailuresAreSharedWithOtherProcesses() throws Exception {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), FailingProcess.class.getName(), file.toString())
+				.inheritIO()
+				.start();
+		assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+		assertThat(process.exitValue(), is(0));
+		
+		TrialHealth health = TrialHealth.open(file).failureThreshold(3);
+		AtomicInteger calls = new AtomicInteger();
+		
+		assertThat(failingChain(health, calls).run(), is("fallback"));
+		assertThat(calls.get(), is(0));
+	}
+	
+	@Test
+	public void testSingleProbeAfterOpening() throws Exception {
+		TrialHealth health = TrialHealth.open(file).failureThreshold(1).openFor(50, TimeUnit.MILLISECONDS);
+		TrialHealth.Breaker breaker = health.breaker("backend");
+		TrialHealth.Breaker other = TrialHealth.open(file).breaker("backend");
+		
+		breaker.failed();
+		assertThat(breaker.allows(), is(false));
+		
+		Thread.sleep(100);
+		assertThat(breaker.allows(), is(true));
+		assertThat(other.allows(), is(false));
+		
+		breaker.succeeded();
+		assertThat(other.allows(), is(true));
+		assertThat(health.isOpen("backend"), is(false));
+		assertThat(health.getFailureCount("backend"), is(0L));
+	}
+	
+	@Test
+	public void testCrashedProbeIsReplaced() throws Exception {
+		TrialHealth health = TrialHealth.open(file).failureThreshold(1).openFor(10, TimeUnit.MILLISECONDS)
+				.probeTimeout(50, TimeUnit.MILLISECONDS);
+		TrialHealth.Breaker breaker = health.breaker("backend");
+		
+		breaker.failed();
+		Thread.sleep(30);
+		// this probe never reports back, as if its process had crashed
+		assertThat(breaker.allows(), is(true));
+		assertThat(breaker.allows(), is(false));
+		
+		Thread.sleep(100);
+		assertThat(breaker.allows(), is(true));
+	}
+	
+	@Test
+	public void testProbeIsNotClaimedWhenTheLimitIsReached() throws Exception {
+		TrialHealth health = TrialHealth.open(file).failureThreshold(1).openFor(10, TimeUnit.MILLISECONDS);
+		ConcurrencyLimit limit = ConcurrencyLimit.aimd(1).between(1, 1);
+		AtomicInteger calls = new AtomicInteger();
+		NoArgTrialAndError<String> chain = TrialAndError.<String>firstTry(() -> {
+			calls.incrementAndGet();
+			return "backend";
+		})
+				.guardedBy(health, "backend")
+				.limitedBy(limit)
+				.orElseTry(() -> "fallback");
+		
+		health.breaker("backend").failed();
+		Thread.sleep(30);
+		
+		// the only place is taken, so the call is skipped before it can become the probe
+		assertTrue(limit.tryAcquire());
+		assertThat(chain.run(), is("fallback"));
+		limit.cancel();
+		
+		assertThat(chain.run(), is("backend"));
+		assertThat(calls.get(), is(1));
+		assertThat(health.isOpen("backend"), is(false));
+	}
+	
+	@Test
+	public void testStaleFailuresAreForgotten() throws Exception {
+		TrialHealth health = TrialHealth.open(file).failureThreshold(2).staleAfter(50, TimeUnit.MILLISECONDS);
+		TrialHealth.Breaker breaker = health.breaker("backend");
+		
+		breaker.failed();
+		Thread.sleep(100);
+		breaker.failed();
+		
+		assertThat(health.getFailureCount("backend"), is(1L));
+		assertThat(health.isOpen("backend"), is(false));
+	}
+	
+	@Test
+	public void testStaleEntriesAreReused() throws Exception {
+		TrialHealth health = TrialHealth.open(file, 2).failureThreshold(1).staleAfter(50, TimeUnit.MILLISECONDS);
+		health.breaker("first").failed();
+		health.breaker("second").failed();
+		
+		TrialHealth.Breaker third = health.breaker("third");
+		// the store is full, so the breaker does nothing until an entry goes stale
+		third.failed();
+		assertThat(health.getFailureCount("third"), is(0L));
+		
+		Thread.sleep(1100);
+		third.failed();
+		assertThat(health.getFailureCount("third"), is(1L));
+		assertThat(health.isOpen("third"), is(true));
+	}
+	
+	@Test
+	public void testRejectsOtherFiles() throws IOException {
+		Files.write(file, "not a health store, just some text to fill the header".getBytes());
+		
+		try {
+			TrialHealth.open(file);
+			throw new AssertionError("expected the file to be rejected");
+		} catch (IOException expected) {
+		}
+	}
+	
+	private static NoArgTrialAndError<String> failingChain(TrialHealth health, AtomicInteger calls) {
+		return TrialAndError.<String>firstTry(() -> {
+			calls.incrementAndGet();
+			throw new IOException("backend is down");
+		})
+				.guardedBy(health, "backend")
+				.orElseTry(() -> "fallback");
+	}
+	
+	/**
+	 * Runs in a separate JVM, failing the shared backend until its breaker opens
+	 */
+	public static class FailingProcess {
+		public static void main(String[] args) throws IOException {
+			NoArgTrialAndError<String> chain = failingChain(TrialHealth.open(new File(args[0]).toPath()).failureThreshold(3), new AtomicInteger());
+			for(int i = 0; i < 3; i++) {
+				chain.run();
+			}
+		}
+	}
+}
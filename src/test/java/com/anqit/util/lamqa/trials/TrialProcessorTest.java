@@ -0,0 +1,258 @@
+package com.anqit.util.lamqa.trials;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+public class TrialProcessorTest {
+	@Test
+	public void testOrderedWithFallbacks() throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		TrialProcessor<Integer, String> processor = TrialProcessor.of(
+				TrialAndError.<Integer, String>firstTry(i -> {
+					Thread.sleep(ThreadLocalRandom.current().nextInt(5));
+					if(i % 3 == 0) {
+						throw new IllegalStateException();
+					}
+					return "primary " + i;
+				})
+				.orElseTry(i -> "fallback " + i))
+				.concurrency(4)
+				.on(executor);
+		
+		ListPublisher<Integer> publisher = new ListPublisher<>(1, 2, 3, 4, 5, 6);
+		RecordingSubscriber<String> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE);
+		publisher.subscribe(processor);
+		processor.subscribe(subscriber);
+		
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+		assertThat(subscriber.received, is(Arrays.asList("primary 1", "primary 2", "fallback 3", "primary 4", "primary 5", "fallback 6")));
+		assertThat(subscriber.error == null, is(true));
+		executor.shutdown();
+	}
+	
+	@Test
+	public void testDemandLimitsWork() throws InterruptedException {
+		AtomicInteger calls = new AtomicInteger();
+		TrialProcessor<Integer, Integer> processor = TrialProcessor.<Integer, Integer>of(i -> {
+			calls.incrementAndGet();
+			return i * 10;
+		})
+				.concurrency(8)
+				.bufferSize(1)
+				.unordered()
+				.on(Runnable::run);
+		
+		ListPublisher<Integer> publisher = new ListPublisher<>(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+		RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(2);
+		publisher.subscribe(processor);
+		processor.subscribe(subscriber);
+		
+		assertThat(subscriber.received, is(Arrays.asList(10, 20)));
+		assertThat(publisher.requested.get(), is(3L));
+		assertThat(calls.get(), is(3));
+		
+		subscriber.subscription.request(Long.MAX_VALUE);
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+		assertThat(subscriber.received.size(), is(10));
+		assertThat(calls.get(), is(10));
+	}
+	
+	@Test
+	public void testFailuresSignalled() throws InterruptedException {
+		TrialProcessor<Integer, Integer> processor = TrialProcessor.<Integer, Integer>of(i -> {
+			if(i == 2) {
+				throw new IllegalArgumentException("two");
+			}
+			return i;
+		})
+				.on(Runnable::run);
+		
+		ListPublisher<Integer> publisher = new ListPublisher<>(1, 2, 3);
+		RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE);
+		publisher.subscribe(processor);
+		processor.subscribe(subscriber);
+		
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+		assertThat(subscriber.received, is(Arrays.asList(1)));
+		assertThat(subscriber.error, instanceOf(IllegalArgumentException.class));
+		assertThat(publisher.cancelled, is(true));
+	}
+	
+	@Test
+	public void testFailuresRoutedToHandler() throws InterruptedException {
+		List<Integer> failed = new CopyOnWriteArrayList<>();
+		TrialProcessor<Integer, Integer> processor = TrialProcessor.<Integer, Integer>of(i -> {
+			if(i == 2) {
+				throw new IllegalArgumentException("two");
+			}
+			return i == 3 ? null : i;
+		})
+				.routingFailuresTo((e, i) -> failed.add(i))
+				.on(Runnable::run);
+		
+		ListPublisher<Integer> publisher = new ListPublisher<>(1, 2, 3, 4);
+		RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE);
+		publisher.subscribe(processor);
+		processor.subscribe(subscriber);
+		
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+		assertThat(subscriber.received, is(Arrays.asList(1, 4)));
+		assertThat(failed, is(Arrays.asList(2)));
+		assertThat(subscriber.error == null, is(true));
+	}
+	
+	@Test
+	public void testErrorsSignalledEvenWithHandler() throws InterruptedException {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		List<Integer> failed = new CopyOnWriteArrayList<>();
+		TrialProcessor<Integer, Integer> processor = TrialProcessor.<Integer, Integer>of(i -> {
+			if(i == 2) {
+				throw new AssertionError("two");
+			}
+			return i;
+		})
+				.routingFailuresTo((e, i) -> failed.add(i))
+				.concurrency(2)
+				.on(executor);
+		
+		ListPublisher<Integer> publisher = new ListPublisher<>(1, 2, 3);
+		RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE);
+		publisher.subscribe(processor);
+		processor.subscribe(subscriber);
+		
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+		assertThat(subscriber.received, is(Arrays.asList(1)));
+		assertThat(subscriber.error, instanceOf(AssertionError.class));
+		assertThat(failed.isEmpty(), is(true));
+		executor.shutdown();
+	}
+	
+	@Test
+	public void testNullResultsDropped() throws InterruptedException {
+		// without a default, the trial returns null when every function fails
+		TrialProcessor<Integer, String> processor = TrialProcessor.of(
+				TrialAndError.<Integer, String>firstTry(i -> {
+					if(i == 2) {
+						throw new IllegalStateException();
+					}
+					return "value " + i;
+				}))
+				.on(Runnable::run);
+		
+		ListPublisher<Integer> publisher = new ListPublisher<>(1, 2, 3);
+		RecordingSubscriber<String> subscriber = new RecordingSubscriber<>(Long.MAX_VALUE);
+		publisher.subscribe(processor);
+		processor.subscribe(subscriber);
+		
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+		assertThat(subscriber.received, is(Arrays.asList("value 1", "value 3")));
+		assertThat(subscriber.error == null, is(true));
+	}
+	
+	@Test
+	public void testSingleSubscriber() throws InterruptedException {
+		TrialProcessor<Integer, Integer> processor = TrialProcessor.of(i -> i);
+		processor.subscribe(new RecordingSubscriber<>(1));
+		
+		RecordingSubscriber<Integer> second = new RecordingSubscriber<>(1);
+		processor.subscribe(second);
+		
+		assertTrue(second.done.await(10, TimeUnit.SECONDS));
+		assertThat(second.error, instanceOf(IllegalStateException.class));
+	}
+	
+	private static class ListPublisher<T> implements Publisher<T> {
+		private final Iterator<T> elements;
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicLong demand = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+		private volatile boolean cancelled = false;
+		
+		@SafeVarargs
+		ListPublisher(T... elements) {
+			this.elements = Arrays.asList(elements).iterator();
+		}
+		
+		@Override
+		public void subscribe(Subscriber<? super T> subscriber) {
+			subscriber.onSubscribe(new Subscription() {
+				@Override
+				public void request(long n) {
+					requested.addAndGet(n);
+					demand.addAndGet(n);
+					if(wip.getAndIncrement() != 0) {
+						return;
+					}
+					do {
+						while(!cancelled && demand.get() > 0 && elements.hasNext()) {
+							demand.decrementAndGet();
+							subscriber.onNext(elements.next());
+						}
+						if(!cancelled && !elements.hasNext()) {
+							cancelled = true;
+							subscriber.onComplete();
+						}
+					} while(wip.decrementAndGet() != 0);
+				}
+				
+				@Override
+				public void cancel() {
+					cancelled = true;
+				}
+			});
+		}
+	}
+	
+	private static class RecordingSubscriber<T> implements Subscriber<T> {
+		private final long initialRequest;
+		private final List<T> received = new CopyOnWriteArrayList<>();
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile Subscription subscription;
+		private volatile Throwable error;
+		
+		RecordingSubscriber(long initialRequest) {
+			this.initialRequest = initialRequest;
+		}
+		
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(initialRequest);
+		}
+
+		@Override
+		public void onNext(T t) {
+			received.add(t);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			error = t;
+			done.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			done.countDown();
+		}
+	}
+}